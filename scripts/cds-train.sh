@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# 用一组 c0 程序训练，为精简 jar 生成 AppCDS 归档 compilec0.jsa，并把两个启动脚本复制到 jar 旁边
+# 每个程序各跑一次记录加载的类，合并后统一转储成一个归档，这样归档覆盖整个语料而不只是一次运行
+# 用法：scripts/cds-train.sh [jar] [语料目录]
+set -euo pipefail
+
+root=$(cd "$(dirname "$0")/.." && pwd)
+jar=${1:-$root/target/compilec0.jar}
+corpus=${2:-$root/src/test/resources/c0}
+dir=$(cd "$(dirname "$jar")" && pwd)
+jar=$dir/$(basename "$jar")
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+n=0
+for input in "$corpus"/*.c0; do
+    n=$((n + 1))
+    # 编译错误的程序也有用，能把报错路径上的类记录下来
+    java -Xshare:off -XX:DumpLoadedClassList="$work/$n.classlist" \
+        -jar "$jar" "$input" -o "$work/out.o0" > /dev/null 2>&1 || true
+done
+if ((n == 0)); then
+    echo "no c0 programs in $corpus" >&2
+    exit 1
+fi
+
+cat "$work"/*.classlist | sort -u > "$work/compilec0.classlist"
+java -Xshare:dump -XX:SharedClassListFile="$work/compilec0.classlist" \
+    -XX:SharedArchiveFile="$dir/compilec0.jsa" -cp "$jar" > /dev/null
+cp "$root/scripts/compilec0" "$root/scripts/compilec0-client" "$dir/"
+chmod +x "$dir/compilec0" "$dir/compilec0-client"
+echo "trained $dir/compilec0.jsa on $n programs"
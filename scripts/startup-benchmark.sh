@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+# 比较 Spring Boot 胖 jar、精简 jar 和带 AppCDS 归档的精简 jar 从 JVM 启动到退出的时间
+# 用法：scripts/startup-benchmark.sh [次数] [c0 源文件]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+runs=${1:-20}
+input=${2:-src/test/resources/c0/fib.c0}
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+mvn -B -q clean package
+cp target/compilec0.jar "$work/spring.jar"
+mvn -B -q -P lean clean package
+cp target/compilec0.jar "$work/lean.jar"
+mkdir "$work/cds"
+cp target/compilec0.jar "$work/cds/compilec0.jar"
+scripts/cds-train.sh "$work/cds/compilec0.jar" > /dev/null
+
+measure() {
+    local name=$1 total=0 best=0 start end elapsed
+    shift
+    # 先跑一次，让文件进入页缓存
+    "$@" "$input" -o "$work/out.o0" > /dev/null
+    for ((i = 0; i < runs; i++)); do
+        start=$(date +%s%N)
+        "$@" "$input" -o "$work/out.o0" > /dev/null
+        end=$(date +%s%N)
+        elapsed=$(((end - start) / 1000000))
+        total=$((total + elapsed))
+        if ((best == 0 || elapsed < best)); then
+            best=$elapsed
+        fi
+    done
+    printf '%-12s %6d ms 平均  %6d ms 最快  (%d 次)\n' "$name" $((total / runs)) "$best" "$runs"
+}
+
+measure spring java -jar "$work/spring.jar"
+measure lean java -jar "$work/lean.jar"
+measure lean+cds "$work/cds/compilec0"
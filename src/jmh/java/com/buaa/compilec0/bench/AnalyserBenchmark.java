@@ -0,0 +1,15 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.assembler.Assembler;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * 端到端编译：词法、语法、语义分析和代码生成，不含写文件
+ */
+public class AnalyserBenchmark extends BenchmarkDefaults {
+
+    @Benchmark
+    public Assembler analyse(ProgramState program) throws Exception {
+        return program.compile();
+    }
+}
@@ -0,0 +1,66 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.driver.BatchCompiler;
+import com.buaa.compilec0.driver.CompileJob;
+import com.buaa.compilec0.driver.CompileResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 批量编译一个目录：一次操作编译 files 个生成的程序，比较不同并行度的吞吐量
+ * gc profiler 只统计测试线程自己的分配，并行度大于 1 时 gc.alloc.rate.norm 偏小
+ */
+@State(Scope.Benchmark)
+public class BatchBenchmark extends BenchmarkDefaults {
+    @Param({"256"})
+    public int files;
+
+    @Param({"1", "4", "16", "32"})
+    public int parallelism;
+
+    private Path directory;
+    private List<CompileJob> jobs;
+
+    @Setup
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("compilec0-batch");
+        var sources = Files.createDirectories(directory.resolve("src"));
+        for (int i = 0; i < files; i++) {
+            var source = new C0ProgramGenerator(10 + i % 20, 2 + i % 6, 8 + i % 24, i % 10).generate();
+            Files.writeString(sources.resolve("p" + i + ".c0"), source, StandardCharsets.UTF_8);
+        }
+        jobs = CompileJob.fromDirectory(sources, directory.resolve("out"));
+    }
+
+    @TearDown
+    public void cleanUp() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<CompileResult> compileAll() {
+        var results = new BatchCompiler(parallelism).compile(jobs);
+        for (CompileResult result : results) {
+            if (!result.isSuccess()) {
+                throw new IllegalStateException(result.getJob() + ": " + result.getError());
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,22 @@
+package com.buaa.compilec0.bench;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * benchmarks.jar 的入口，参数和 JMH 的命令行相同
+ * 没有指定 -prof 时默认加上 gc profiler，这样每个结果都带有每次操作分配的字节数
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        var arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
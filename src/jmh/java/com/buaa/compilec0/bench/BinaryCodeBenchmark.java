@@ -0,0 +1,49 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.assembler.BinaryCode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * 把编译好的程序编码成 o0
+ * encode 只编码到复用的 ByteBuffer，writeToOutput 包括写文件
+ */
+@State(Scope.Thread)
+public class BinaryCodeBenchmark extends BenchmarkDefaults {
+    private BinaryCode binaryCode;
+    private ByteBuffer buffer;
+    private File output;
+
+    @Setup
+    public void compile(ProgramState program) throws Exception {
+        binaryCode = new BinaryCode(program.compile());
+        buffer = ByteBuffer.allocate(binaryCode.size());
+        output = Files.createTempFile("compilec0-bench", ".o0").toFile();
+    }
+
+    @TearDown
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(output.toPath());
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        buffer.clear();
+        binaryCode.writeTo(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public File writeToOutput() throws IOException {
+        binaryCode.writeToOutput(output);
+        return output;
+    }
+}
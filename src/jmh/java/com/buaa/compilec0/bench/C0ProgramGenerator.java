@@ -0,0 +1,134 @@
+package com.buaa.compilec0.bench;
+
+/**
+ * 生成性能测试用的合成 c0 程序
+ * 规模由四个参数控制：
+ * 1.functions 函数个数（不含 main）
+ * 2.depth 每个函数里 if / while 交替嵌套的层数，每层声明一个局部变量
+ * 3.expressionSize 最内层赋值表达式的项数
+ * 4.strings 字符串字面量的总数，轮流放进各个函数
+ * 生成的程序能通过编译，也能在虚拟机上正常结束；同样的参数总是生成同样的程序
+ */
+public class C0ProgramGenerator {
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+
+    private final int functions;
+    private final int depth;
+    private final int expressionSize;
+    private final int strings;
+
+    public C0ProgramGenerator(int functions, int depth, int expressionSize, int strings) {
+        if (functions < 1 || depth < 0 || expressionSize < 1 || strings < 0) {
+            throw new IllegalArgumentException("bad program size");
+        }
+        this.functions = functions;
+        this.depth = depth;
+        this.expressionSize = expressionSize;
+        this.strings = strings;
+    }
+
+    public String generate() {
+        var out = new StringBuilder();
+        out.append("// functions=").append(functions).append(" depth=").append(depth)
+                .append(" expression=").append(expressionSize).append(" strings=").append(strings).append('\n');
+        out.append("let total: int = 0;\n");
+        out.append("const step: int = 3;\n\n");
+        for (int i = 0; i < functions; i++) {
+            function(out, i);
+        }
+        out.append("fn main() -> void {\n");
+        for (int i = 0; i < functions; i++) {
+            out.append("    total = total + f").append(i).append('(').append(i % 7).append(", ").append(i % 5 + 2).append(");\n");
+        }
+        out.append("    putint(total);\n");
+        out.append("    putln();\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private void function(StringBuilder out, int index) {
+        out.append("fn f").append(index).append("(a: int, b: int) -> int {\n");
+        out.append("    let x0: int = a;\n");
+        for (int s = index; s < strings; s += functions) {
+            out.append("    putstr(\"string ").append(s).append(": \\\"quoted\\\" and escaped\\n\");\n");
+        }
+        for (int level = 1; level <= depth; level++) {
+            indent(out, level);
+            if (level % 2 == 1) {
+                out.append("if x").append(level - 1).append(" >= a {\n");
+            } else {
+                out.append("while x").append(level - 1).append(" < b {\n");
+            }
+            indent(out, level + 1);
+            out.append("let x").append(level).append(": int = x").append(level - 1).append(" + ").append(level).append(";\n");
+        }
+        indent(out, depth + 1);
+        out.append("x0 = ");
+        expression(out, index);
+        out.append(";\n");
+        for (int level = depth; level >= 1; level--) {
+            if (level % 2 == 0) {
+                // while 的循环变量每次加一，保证能结束
+                indent(out, level + 1);
+                out.append("x").append(level - 1).append(" = x").append(level - 1).append(" + 1;\n");
+            }
+            indent(out, level);
+            out.append("}\n");
+        }
+        out.append("    return x0;\n");
+        out.append("}\n\n");
+    }
+
+    /**
+     * 项轮流取各层的局部变量、参数、全局变量和常数，每四项加一对括号
+     * 除号后面总是非零常数
+     */
+    private void expression(StringBuilder out, int seed) {
+        for (int i = 0; i < expressionSize; i++) {
+            String operator = OPERATORS[(seed + i) % OPERATORS.length];
+            if (i > 0) {
+                out.append(operator);
+                if (operator.equals(" / ")) {
+                    out.append(i % 9 + 1);
+                    continue;
+                }
+            }
+            boolean group = i % 4 == 0 && i + 1 < expressionSize;
+            if (group) {
+                out.append('(');
+            }
+            term(out, seed + i);
+            if (group) {
+                out.append(" + ");
+                term(out, seed + i + 1);
+                out.append(')');
+            }
+        }
+    }
+
+    private void term(StringBuilder out, int k) {
+        switch (k % 5) {
+            case 0:
+                out.append('x').append(k % (depth + 1));
+                break;
+            case 1:
+                out.append('a');
+                break;
+            case 2:
+                out.append("step");
+                break;
+            case 3:
+                out.append('x').append(depth);
+                break;
+            default:
+                out.append(k % 9 + 1);
+                break;
+        }
+    }
+
+    private static void indent(StringBuilder out, int level) {
+        for (int i = 0; i < level; i++) {
+            out.append("    ");
+        }
+    }
+}
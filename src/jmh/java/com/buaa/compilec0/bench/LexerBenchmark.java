@@ -0,0 +1,57 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.tokenizer.Token;
+import com.buaa.compilec0.tokenizer.TokenBuffer;
+import com.buaa.compilec0.tokenizer.TokenType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 词法分析：一次操作把整个程序切成 token
+ * tokens 计数器另外给出每秒的 nextToken 次数
+ * nextToken 每次返回一个 Token 对象，nextTokenIntoBuffer 是 TokenStream 用的写入 TokenBuffer 的方式
+ */
+public class LexerBenchmark extends BenchmarkDefaults {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Benchmark
+    public void nextToken(ProgramState program, Counters counters, Blackhole blackhole) throws Exception {
+        var lexer = program.newLexer();
+        long count = 0;
+        Token token;
+        do {
+            token = lexer.nextToken();
+            blackhole.consume(token);
+            count++;
+        } while (token.getTokenType() != TokenType.EOF);
+        counters.tokens += count;
+    }
+
+    @Benchmark
+    public void nextTokenIntoBuffer(ProgramState program, Counters counters, Blackhole blackhole) throws Exception {
+        var lexer = program.newLexer();
+        var buffer = new TokenBuffer(1);
+        long count = 0;
+        do {
+            lexer.nextToken(buffer, 0);
+            blackhole.consume(buffer.bits(0));
+            count++;
+        } while (buffer.type(0) != TokenType.EOF);
+        counters.tokens += count;
+    }
+}
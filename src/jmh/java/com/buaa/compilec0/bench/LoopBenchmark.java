@@ -0,0 +1,68 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.analyser.Analyser;
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.error.CompileError;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.tokenizer.TableTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 一个函数里有很多 while 时的编译速度，每个 while 里都有 break 和 continue
+ * loops 是 while 的总数，每 nesting 个嵌套成一组；回填 break 的时间和 loops 成正比时，
+ * loops 翻倍 ops/s 应该减半
+ */
+public class LoopBenchmark extends BenchmarkDefaults {
+
+    @State(Scope.Benchmark)
+    public static class LoopProgram {
+        @Param({"1000", "2000", "4000", "8000"})
+        public int loops;
+
+        @Param({"1", "50"})
+        public int nesting;
+
+        public byte[] source;
+
+        @Setup
+        public void generate() throws CompileError {
+            source = generate(loops, nesting).getBytes(StandardCharsets.UTF_8);
+            compile();
+        }
+
+        public Assembler compile() throws CompileError {
+            var charSource = new ChannelCharSource(Channels.newChannel(new ByteArrayInputStream(source)), StandardCharsets.UTF_8);
+            return new Analyser(new TableTokenizer(charSource)).analyse();
+        }
+
+        static String generate(int loops, int nesting) {
+            var out = new StringBuilder("fn main() -> void {\n    let k: int = 0;\n");
+            for (int group = 0; group < loops; group += nesting) {
+                int depth = Math.min(nesting, loops - group);
+                for (int i = 0; i < depth; i++) {
+                    out.append("while k < ").append(group + i + 2).append(" {\n")
+                            .append("k = k + 1;\n")
+                            .append("if k == ").append(group + i).append(" { continue; }\n")
+                            .append("if k > ").append(group + i + 1).append(" { break; }\n");
+                }
+                for (int i = 0; i < depth; i++) {
+                    out.append("break;\n}\n");
+                }
+            }
+            return out.append("putint(k);\n}\n").toString();
+        }
+    }
+
+    @Benchmark
+    public Assembler analyse(LoopProgram program) throws Exception {
+        return program.compile();
+    }
+}
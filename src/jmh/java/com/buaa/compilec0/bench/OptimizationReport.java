@@ -0,0 +1,134 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.assembler.BinaryCode;
+import com.buaa.compilec0.assembler.Function;
+import com.buaa.compilec0.driver.CompileOptions;
+import com.buaa.compilec0.driver.Compiler;
+import com.buaa.compilec0.driver.PhaseTimes;
+import com.buaa.compilec0.error.CompileError;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.vm.Program;
+import com.buaa.compilec0.vm.VirtualMachine;
+import com.buaa.compilec0.vm.VmError;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 比较 -O0 和更高优化级别编出来的代码：指令条数、o0 文件大小、虚拟机执行的指令条数
+ * 参数是 .c0 文件或目录（取目录下所有的 .c0），再加上几个 C0ProgramGenerator 生成的程序；编译出错的文件跳过
+ * 两个级别的程序输出不同时标出 DIFF，优化出错时退出码为 1
+ * 用法：java -cp target/benchmarks.jar com.buaa.compilec0.bench.OptimizationReport [-O1|-O2] [文件或目录...]
+ */
+public class OptimizationReport {
+    // 程序需要输入时从这里读
+    private static final byte[] INPUT = "7 3\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws IOException {
+        int level = 1;
+        var sources = new ArrayList<Path>();
+        for (var arg : args) {
+            if (arg.matches("-O[0-9]")) {
+                level = arg.charAt(2) - '0';
+            } else {
+                sources.addAll(listSources(Path.of(arg)));
+            }
+        }
+        var optimized = new CompileOptions(level, CompileOptions.Emit.O0);
+
+        System.out.printf("%-32s%26s%26s%32s%n", "program", "instructions", "bytes", "executed");
+        long[] total = new long[6];
+        boolean same = true;
+        for (var source : sources) {
+            same &= report(source.toString(), Files.readString(source, StandardCharsets.UTF_8), optimized, total);
+        }
+        int[][] sizes = {{10, 4, 8, 0}, {50, 6, 16, 0}, {200, 4, 32, 0}};
+        for (var size : sizes) {
+            var name = String.format("generated %dx%dx%d", size[0], size[1], size[2]);
+            same &= report(name, new C0ProgramGenerator(size[0], size[1], size[2], size[3]).generate(), optimized, total);
+        }
+        System.out.printf("%-32s %s%n", "total", columns(total));
+        if (!same) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return 两个级别的输出是否相同
+     */
+    private static boolean report(String name, String source, CompileOptions optimized, long[] total) {
+        Result baseline;
+        Result result;
+        try {
+            baseline = Result.of(source, CompileOptions.DEFAULT);
+            result = Result.of(source, optimized);
+        } catch (CompileError e) {
+            return true;
+        }
+        long[] row = {baseline.instructions, result.instructions, baseline.bytes, result.bytes,
+                baseline.executed, result.executed};
+        for (int i = 0; i < row.length; i++) {
+            total[i] += row[i];
+        }
+        boolean same = baseline.output.equals(result.output);
+        System.out.printf("%-32s %s%s%n", name, columns(row), same ? "" : "  DIFF");
+        return same;
+    }
+
+    private static String columns(long[] row) {
+        var out = new StringBuilder();
+        for (int i = 0; i < row.length; i += 2) {
+            double percent = row[i] == 0 ? 0 : (row[i + 1] - row[i]) * 100.0 / row[i];
+            out.append(String.format(i == 4 ? " %10d -> %10d %+5.1f%%" : " %7d -> %7d %+5.1f%%", row[i], row[i + 1], percent));
+        }
+        return out.toString();
+    }
+
+    private static List<Path> listSources(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (var files = Files.list(path)) {
+            return files.filter(file -> file.toString().endsWith(".c0")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static final class Result {
+        long instructions;
+        long bytes;
+        long executed;
+        String output;
+
+        static Result of(String source, CompileOptions options) throws CompileError {
+            var bytes = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+            Assembler assembler = Compiler.assemble(
+                    new ChannelCharSource(Channels.newChannel(bytes), StandardCharsets.UTF_8), options, PhaseTimes.NONE);
+            var result = new Result();
+            result.instructions = assembler.startFunction.getInstructions().size();
+            for (Function function : assembler.functions) {
+                result.instructions += function.getInstructions().size();
+            }
+            result.bytes = new BinaryCode(assembler).toByteArray().length;
+
+            var output = new ByteArrayOutputStream();
+            var vm = new VirtualMachine(Program.of(assembler), new ByteArrayInputStream(INPUT), output);
+            try {
+                vm.run();
+                result.output = output.toString(StandardCharsets.UTF_8);
+            } catch (VmError e) {
+                result.output = output.toString(StandardCharsets.UTF_8) + e.getMessage();
+            }
+            result.executed = vm.getExecutedInstructions();
+            return result;
+        }
+    }
+}
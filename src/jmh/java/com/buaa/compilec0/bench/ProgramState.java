@@ -0,0 +1,66 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.analyser.Analyser;
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.error.CompileError;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.tokenizer.CharSource;
+import com.buaa.compilec0.tokenizer.Lexer;
+import com.buaa.compilec0.tokenizer.TableTokenizer;
+import com.buaa.compilec0.tokenizer.Tokenizer;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 各个阶段共用的输入：按参数生成的 c0 程序（UTF-8 字节）
+ * 参数可以在命令行用 -p 覆盖，比如 -p functions=1000 -p depth=16
+ */
+@State(Scope.Benchmark)
+public class ProgramState {
+    @Param({"10", "100"})
+    public int functions;
+
+    @Param({"2", "8"})
+    public int depth;
+
+    @Param({"4", "32"})
+    public int expressionSize;
+
+    @Param({"0", "100"})
+    public int strings;
+
+    // table 为默认的 TableTokenizer，classic 为原来的 Tokenizer
+    @Param({"table"})
+    public String lexer;
+
+    public byte[] source;
+
+    @Setup
+    public void generate() throws CompileError {
+        source = new C0ProgramGenerator(functions, depth, expressionSize, strings)
+                .generate().getBytes(StandardCharsets.UTF_8);
+        // 生成的程序必须能通过编译，否则测到的只是报错的路径
+        compile();
+    }
+
+    public CharSource charSource() {
+        return new ChannelCharSource(Channels.newChannel(new ByteArrayInputStream(source)), StandardCharsets.UTF_8);
+    }
+
+    public Lexer newLexer() {
+        if ("classic".equals(lexer)) {
+            return new Tokenizer(charSource());
+        }
+        return new TableTokenizer(charSource());
+    }
+
+    public Assembler compile() throws CompileError {
+        return new Analyser(newLexer()).analyse();
+    }
+}
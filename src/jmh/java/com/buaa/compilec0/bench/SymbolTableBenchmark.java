@@ -0,0 +1,80 @@
+package com.buaa.compilec0.bench;
+
+import com.buaa.compilec0.symbol.DataType;
+import com.buaa.compilec0.symbol.Symbol;
+import com.buaa.compilec0.symbol.SymbolTable;
+import com.buaa.compilec0.tokenizer.Identifiers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 深层嵌套下的符号表查找
+ * 第 0 层放全局变量 g，之后每一层都声明自己的 v{层数} 和一个同名的 x，x 一层层遮住外层的 x
+ */
+@State(Scope.Thread)
+public class SymbolTableBenchmark extends BenchmarkDefaults {
+    @Param({"4", "64", "1024"})
+    public int depth;
+
+    private SymbolTable symbolTable;
+    private int globalId;
+    private int shadowedId;
+    private int innerId;
+    private int freshId;
+
+    @Setup
+    public void build() throws Exception {
+        var identifiers = new Identifiers();
+        symbolTable = new SymbolTable(identifiers);
+        globalId = identifiers.intern("g");
+        shadowedId = identifiers.intern("x");
+        freshId = identifiers.intern("fresh");
+        symbolTable.pushSymbolTable();
+        symbolTable.addVariableSymbol(DataType.INT, globalId, 0, 0, 0, true);
+        for (int level = 1; level <= depth; level++) {
+            symbolTable.pushSymbolTable();
+            symbolTable.addVariableSymbol(DataType.INT, identifiers.intern("v" + level), level, 0, 0, true);
+            symbolTable.addVariableSymbol(DataType.INT, shadowedId, level, 1, 0, true);
+        }
+        innerId = identifiers.intern("v" + depth);
+    }
+
+    /**
+     * 在最内层找最外层的全局变量
+     */
+    @Benchmark
+    public Symbol lookupGlobal() throws Exception {
+        return symbolTable.findSymbolBySymbolName(depth, globalId, 0);
+    }
+
+    /**
+     * 在最内层找本层的变量
+     */
+    @Benchmark
+    public Symbol lookupInnermost() throws Exception {
+        return symbolTable.findSymbolBySymbolName(depth, innerId, 0);
+    }
+
+    /**
+     * 在第 1 层找被每一层遮住的 x，要走过整条遮蔽链
+     */
+    @Benchmark
+    public Symbol lookupShadowedFromOuterLevel() throws Exception {
+        return symbolTable.findSymbolBySymbolName(1, shadowedId, 0);
+    }
+
+    /**
+     * 进入一层新的作用域，声明一个变量再离开
+     */
+    @Benchmark
+    public boolean enterAndLeaveScope() throws Exception {
+        symbolTable.pushSymbolTable();
+        symbolTable.addVariableSymbol(DataType.INT, freshId, depth + 1, 0, 0, true);
+        boolean exists = symbolTable.isSymbolExistedInAllLevel(depth + 1, freshId, 0);
+        symbolTable.popSymbolTable();
+        return exists;
+    }
+}
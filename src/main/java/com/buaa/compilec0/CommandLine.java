@@ -0,0 +1,204 @@
+package com.buaa.compilec0;
+
+import com.buaa.compilec0.driver.CompileOptions;
+import com.buaa.compilec0.driver.DaemonProtocol;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析好的命令行
+ * 选项的完整定义在 CommandLineParser 里（argparse4j），但 argparse4j 第一次解析要加载几百个类、花几十毫秒，
+ * 比编译一个小文件还慢，所以先用 parse 里的快速路径：只认每个选项的规范写法，
+ * 遇到别的写法（缩写、-O 2、-h、未知选项等）才交给 argparse4j，两条路径得到的结果相同
+ * 参数不对时由 CommandLineParser 打印用法和错误，然后退出
+ */
+final class CommandLine {
+
+    /**
+     * 运行模式
+     * 1.COMPILE 编译一个文件：input -o output
+     * 2.BATCH 批量编译：--batch 目录 [输出目录]，或者 --batch 清单文件
+     * 3.DAEMON 编译守护进程：--daemon [端口]
+     */
+    enum Mode {
+        COMPILE, BATCH, DAEMON
+    }
+
+    /**
+     * 单个文件编译时的输出
+     * 1.QUIET 成功时不输出，出错时只输出错误
+     * 2.NORMAL 成功时不输出，出错时回显输入文件并打印调用栈
+     * 3.VERBOSE 编译前回显输入文件，成功后打印大小和耗时
+     */
+    enum Verbosity {
+        QUIET, NORMAL, VERBOSE
+    }
+
+    Mode mode = Mode.COMPILE;
+    final List<String> operands = new ArrayList<>();
+    String output;
+    Verbosity verbosity = Verbosity.NORMAL;
+    int optimizationLevel = 0;
+    CompileOptions.Emit emit = CompileOptions.Emit.O0;
+    boolean timePhases = false;
+    // 0 为没有指定，批量编译时用 CPU 核数
+    int jobs = 0;
+    Path cacheDirectory;
+
+    private CommandLine() {
+    }
+
+    static CommandLine parse(String[] args) {
+        var commandLine = parseFast(args);
+        if (commandLine == null) {
+            commandLine = CommandLineParser.parse(args);
+        }
+        commandLine.check();
+        return commandLine;
+    }
+
+    CompileOptions compileOptions() {
+        return new CompileOptions(optimizationLevel, emit);
+    }
+
+    String input() {
+        return operands.get(0);
+    }
+
+    int port() {
+        return operands.isEmpty() ? DaemonProtocol.DEFAULT_PORT : Integer.parseInt(operands.get(0));
+    }
+
+    static CommandLine create(Mode mode) {
+        var commandLine = new CommandLine();
+        commandLine.mode = mode;
+        return commandLine;
+    }
+
+    /**
+     * @return 有不认识的写法时为 null
+     */
+    static CommandLine parseFast(String[] args) {
+        var commandLine = new CommandLine();
+        boolean batch = false;
+        boolean daemon = false;
+        boolean quiet = false;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            if (arg.equals("-") || !arg.startsWith("-")) {
+                commandLine.operands.add(arg);
+                continue;
+            }
+            boolean hasValue = i + 1 < args.length;
+            switch (arg) {
+                case "-o":
+                    if (!hasValue || commandLine.output != null) {
+                        return null;
+                    }
+                    commandLine.output = args[++i];
+                    break;
+                case "-O0":
+                case "-O1":
+                case "-O2":
+                    commandLine.optimizationLevel = arg.charAt(2) - '0';
+                    break;
+                case "--emit=o0":
+                case "--emit=text":
+                    commandLine.emit = CompileOptions.Emit.of(arg.substring("--emit=".length()));
+                    break;
+                case "--time-phases":
+                    commandLine.timePhases = true;
+                    break;
+                case "-j":
+                case "--jobs":
+                    if (!hasValue || !isPositive(args[i + 1])) {
+                        return null;
+                    }
+                    commandLine.jobs = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    if (!hasValue) {
+                        return null;
+                    }
+                    commandLine.cacheDirectory = Path.of(args[++i]);
+                    break;
+                case "-q":
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "-v":
+                case "--verbose":
+                    verbose = true;
+                    break;
+                case "--batch":
+                    batch = true;
+                    break;
+                case "--daemon":
+                    daemon = true;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        // 互斥的选项同时出现时，由 argparse4j 报错
+        if ((batch && daemon) || (quiet && verbose)) {
+            return null;
+        }
+        commandLine.mode = batch ? Mode.BATCH : daemon ? Mode.DAEMON : Mode.COMPILE;
+        commandLine.verbosity = quiet ? Verbosity.QUIET : verbose ? Verbosity.VERBOSE : Verbosity.NORMAL;
+        return commandLine;
+    }
+
+    private static boolean isPositive(String value) {
+        if (value.isEmpty() || value.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return Integer.parseInt(value) > 0;
+    }
+
+    /**
+     * 各个模式需要的操作数和不适用的选项
+     */
+    private void check() {
+        switch (mode) {
+            case COMPILE:
+                if (operands.size() != 1 || output == null) {
+                    CommandLineParser.fail("expected <input> -o <output>");
+                }
+                if (jobs != 0) {
+                    CommandLineParser.fail("--jobs only applies to --batch");
+                }
+                break;
+            case BATCH:
+                if (operands.isEmpty() || operands.size() > 2) {
+                    CommandLineParser.fail("--batch expects <directory|manifest> [output-directory]");
+                }
+                if (output != null) {
+                    CommandLineParser.fail("--batch takes the output directory as an operand, not -o");
+                }
+                break;
+            case DAEMON:
+                if (operands.size() > 1 || (operands.size() == 1 && !isPort(operands.get(0)))) {
+                    CommandLineParser.fail("--daemon expects an optional port");
+                }
+                if (output != null || jobs != 0 || cacheDirectory != null || timePhases) {
+                    CommandLineParser.fail("--daemon only accepts -O and --emit");
+                }
+                break;
+            default:
+                throw new Error("unknown mode " + mode);
+        }
+    }
+
+    private static boolean isPort(String value) {
+        return (value.equals("0") || isPositive(value)) && Integer.parseInt(value) <= 65535;
+    }
+}
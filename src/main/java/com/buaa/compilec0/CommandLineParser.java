@@ -0,0 +1,105 @@
+package com.buaa.compilec0;
+
+import com.buaa.compilec0.driver.CompileOptions;
+import com.buaa.compilec0.driver.DaemonProtocol;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.helper.HelpScreenException;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.MutuallyExclusiveGroup;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+import java.nio.file.Path;
+
+/**
+ * 命令行选项的完整定义，也是 -h 打印的帮助
+ * 只有 CommandLine 的快速路径处理不了，或者参数有错时才会加载这个类（连同 argparse4j）
+ * 新增选项时 CommandLine.parseFast 也要认识它的规范写法
+ */
+final class CommandLineParser {
+
+    private CommandLineParser() {
+    }
+
+    static ArgumentParser create() {
+        var parser = ArgumentParsers.newFor("compilec0").build()
+                .description("Compile a c0 source file to an o0 module.");
+        parser.addArgument("operands").nargs("*").metavar("FILE")
+                .help("input file (- for stdin); with --batch a directory or manifest and an optional output "
+                        + "directory; with --daemon an optional port");
+        parser.addArgument("-o").dest("output").metavar("OUTPUT")
+                .help("output file (- for stdout)");
+        parser.addArgument("-O").dest("level").type(Integer.class).metavar("LEVEL")
+                .choices(Arguments.range(0, CompileOptions.MAX_OPTIMIZATION_LEVEL)).setDefault(0)
+                .help("optimisation level (default: 0)");
+        parser.addArgument("--emit").choices("o0", "text").setDefault("o0")
+                .help("o0 module or human-readable listing (default: o0)");
+        parser.addArgument("--time-phases").dest("time_phases").action(Arguments.storeTrue())
+                .help("print the time spent in each compilation phase to stderr");
+        parser.addArgument("-j", "--jobs").dest("jobs").type(Integer.class).metavar("N")
+                .help("with --batch, compile at most N files at a time (default: number of CPUs)");
+        parser.addArgument("--cache").metavar("DIR")
+                .help("content-addressed compilation cache directory");
+
+        MutuallyExclusiveGroup verbosity = parser.addMutuallyExclusiveGroup();
+        verbosity.addArgument("-q", "--quiet").action(Arguments.storeTrue())
+                .help("on errors print only the error");
+        verbosity.addArgument("-v", "--verbose").action(Arguments.storeTrue())
+                .help("echo the input and print size and timing");
+
+        MutuallyExclusiveGroup mode = parser.addMutuallyExclusiveGroup();
+        mode.addArgument("--batch").action(Arguments.storeTrue())
+                .help("compile every .c0 file under a directory, or every line of a manifest");
+        mode.addArgument("--daemon").action(Arguments.storeTrue())
+                .help("run a compile daemon on 127.0.0.1 (default port " + DaemonProtocol.DEFAULT_PORT + ")");
+        return parser;
+    }
+
+    /**
+     * 用 argparse4j 解析，有错时打印用法和错误并退出，-h 时打印帮助并退出
+     */
+    static CommandLine parse(String[] args) {
+        var parser = create();
+        Namespace namespace;
+        try {
+            namespace = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            exit(parser, e);
+            return null;
+        }
+        var mode = namespace.getBoolean("batch") ? CommandLine.Mode.BATCH
+                : namespace.getBoolean("daemon") ? CommandLine.Mode.DAEMON : CommandLine.Mode.COMPILE;
+        var commandLine = CommandLine.create(mode);
+        commandLine.operands.addAll(namespace.<String>getList("operands"));
+        commandLine.output = namespace.getString("output");
+        commandLine.verbosity = namespace.getBoolean("quiet") ? CommandLine.Verbosity.QUIET
+                : namespace.getBoolean("verbose") ? CommandLine.Verbosity.VERBOSE : CommandLine.Verbosity.NORMAL;
+        commandLine.optimizationLevel = namespace.getInt("level");
+        commandLine.emit = CompileOptions.Emit.of(namespace.getString("emit"));
+        commandLine.timePhases = namespace.getBoolean("time_phases");
+        Integer jobs = namespace.getInt("jobs");
+        if (jobs != null) {
+            if (jobs < 1) {
+                fail("--jobs expects a positive number");
+            }
+            commandLine.jobs = jobs;
+        }
+        var cache = namespace.getString("cache");
+        commandLine.cacheDirectory = cache == null ? null : Path.of(cache);
+        return commandLine;
+    }
+
+    /**
+     * 打印用法和错误，退出码为 2
+     */
+    static void fail(String message) {
+        var parser = create();
+        exit(parser, new ArgumentParserException(message, parser));
+    }
+
+    private static void exit(ArgumentParser parser, ArgumentParserException e) {
+        parser.handleError(e);
+        System.exit(e instanceof HelpScreenException ? 0 : 2);
+    }
+}
@@ -0,0 +1,191 @@
+package com.buaa.compilec0;
+
+import com.buaa.compilec0.CommandLine.Verbosity;
+import com.buaa.compilec0.driver.BatchCompiler;
+import com.buaa.compilec0.driver.CompileCache;
+import com.buaa.compilec0.driver.CompileDaemon;
+import com.buaa.compilec0.driver.CompileJob;
+import com.buaa.compilec0.driver.Compiler;
+import com.buaa.compilec0.driver.PhaseTimes;
+import com.buaa.compilec0.driver.PhaseTimes.Phase;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 命令行入口，不依赖 Spring
+ * 精简 jar（mvn -P lean package）的 Main-Class 就是这个类，启动时只加载编译器自己的类
+ * 用法（选项的完整列表见 -h，解析见 CommandLine）：
+ * 1.input -o output [-q|-v] 编译一个文件，成功时不输出任何东西；input 和 output 都可以是 -，表示标准输入和标准输出
+ * 2.--batch 目录 [输出目录] 编译目录下所有的 .c0 文件
+ * 3.--batch 清单文件 按清单中每行的 "输入 输出" 编译
+ * 批量编译默认按 CPU 核数并行，加上 -j N 限制同时编译的文件数
+ * 4.--daemon [端口] 启动常驻的编译守护进程，客户端见 DaemonClient
+ * 单个文件和批量编译都可以加上 --cache 目录，用按内容寻址的编译缓存，见 CompileCache
+ * -O0/-O1/-O2 选择优化级别，--emit=text 输出可读的汇编文本，--time-phases 在标准错误上打印各阶段的耗时
+ */
+public class Main {
+
+    public static void main(String[] args) {
+        var commandLine = CommandLine.parse(args);
+        switch (commandLine.mode) {
+            case BATCH:
+                System.exit(batch(commandLine));
+                break;
+            case DAEMON:
+                System.exit(daemon(commandLine));
+                break;
+            default:
+                compile(commandLine);
+                break;
+        }
+    }
+
+    private static void compile(CommandLine commandLine) {
+        var inputFileName = commandLine.input();
+        var outputFileName = commandLine.output;
+        var verbosity = commandLine.verbosity;
+        var options = commandLine.compileOptions();
+        var cache = cache(commandLine);
+        var times = commandLine.timePhases ? new PhaseTimes() : PhaseTimes.NONE;
+        // 输出到标准输出时，回显和错误信息都改到标准错误，不混进 o0 里
+        var console = outputFileName.equals("-") ? System.err : System.out;
+
+        // 源文件只读一次，词法分析和出错时的回显共用这份内容
+        byte[] source;
+        long start = System.nanoTime();
+        try {
+            source = inputFileName.equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Path.of(inputFileName));
+        } catch (IOException e) {
+            System.err.println("Cannot find input file.");
+            e.printStackTrace();
+            System.exit(2);
+            return;
+        }
+        times.stop(Phase.READ, start);
+        if (verbosity == Verbosity.VERBOSE) {
+            printInputFile(source, console);
+        }
+
+        try {
+            start = System.nanoTime();
+            var code = Compiler.compile(source, options, cache, times);
+            long writeStart = System.nanoTime();
+            if (outputFileName.equals("-")) {
+                Compiler.write(code, Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+            } else {
+                Files.write(Path.of(outputFileName), code);
+            }
+            times.stop(Phase.WRITE, writeStart);
+            if (verbosity == Verbosity.VERBOSE) {
+                System.err.printf("%s -> %s (%s): %d bytes in %.3f ms%n",
+                        inputFileName, outputFileName, options, code.length, (System.nanoTime() - start) / 1e6);
+                if (cache != null) {
+                    System.err.println(cache);
+                }
+            }
+            if (commandLine.timePhases) {
+                times.print(System.err);
+            }
+        } catch (Exception e) {
+            console.println("编译错误");
+            if (verbosity == Verbosity.NORMAL) {
+                printInputFile(source, console);
+            }
+            if (verbosity == Verbosity.QUIET) {
+                System.err.println(e);
+            } else {
+                e.printStackTrace();
+            }
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * 批量编译，一个文件出错不影响其它文件
+     * @return 全部成功返回 0，否则返回 1
+     */
+    private static int batch(CommandLine commandLine) {
+        var operands = commandLine.operands;
+        int parallelism = commandLine.jobs > 0 ? commandLine.jobs : Runtime.getRuntime().availableProcessors();
+        var cache = cache(commandLine);
+        var times = commandLine.timePhases ? new PhaseTimes() : PhaseTimes.NONE;
+        var target = Path.of(operands.get(0));
+        List<CompileJob> jobs;
+        try {
+            if (Files.isDirectory(target)) {
+                jobs = CompileJob.fromDirectory(target, operands.size() == 2 ? Path.of(operands.get(1)) : target);
+            } else {
+                jobs = CompileJob.fromManifest(target);
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot read batch input: " + e.getMessage());
+            return 2;
+        }
+        long start = System.nanoTime();
+        var results = new BatchCompiler(parallelism, cache, commandLine.compileOptions(), times).compile(jobs);
+        BatchCompiler.printSummary(results, System.nanoTime() - start, System.out);
+        if (cache != null) {
+            System.out.println(cache);
+        }
+        if (commandLine.timePhases) {
+            times.print(System.err);
+        }
+        return results.stream().allMatch(result -> result.isSuccess()) ? 0 : 1;
+    }
+
+    private static int daemon(CommandLine commandLine) {
+        try {
+            var daemon = new CompileDaemon(commandLine.port(), commandLine.compileOptions());
+            // 退出时（包括收到 SIGTERM）删掉令牌文件，打印统计信息
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    daemon.close();
+                } catch (IOException e) {
+                    // 令牌文件删不掉也照样退出
+                }
+                System.out.print(daemon.stats());
+            }));
+            System.out.println("compile daemon listening on 127.0.0.1:" + daemon.getPort() + ", token in " + daemon.getTokenFile());
+            daemon.serve();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot start compile daemon: " + e.getMessage());
+            return 3;
+        }
+    }
+
+    /**
+     * --cache 指定的缓存，没有指定时为 null；找不到编译器的指纹时缓存不启用，提示一下
+     */
+    private static CompileCache cache(CommandLine commandLine) {
+        if (commandLine.cacheDirectory == null) {
+            return null;
+        }
+        var cache = new CompileCache(commandLine.cacheDirectory);
+        if (!cache.isEnabled()) {
+            System.err.println(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * 不可明说的方法
+     * 如果编译出错，就打印一下输入文件
+     * @param source 已经读入的源文件
+     * @param console 输出到标准输出时为标准错误
+     */
+    private static void printInputFile(byte[] source, PrintStream console) {
+        console.write(source, 0, source.length);
+        if (source.length > 0 && source[source.length - 1] != '\n') {
+            console.println();
+        }
+        console.flush();
+    }
+}
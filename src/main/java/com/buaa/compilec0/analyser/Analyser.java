@@ -5,19 +5,21 @@ import com.buaa.compilec0.error.*;
 import com.buaa.compilec0.library.LibFuncUtils;
 import com.buaa.compilec0.library.LibFunctions;
 import com.buaa.compilec0.symbol.*;
+import com.buaa.compilec0.tokenizer.Lexer;
 import com.buaa.compilec0.tokenizer.Token;
+import com.buaa.compilec0.tokenizer.TokenStream;
 import com.buaa.compilec0.tokenizer.TokenType;
-import com.buaa.compilec0.tokenizer.Tokenizer;
 import com.buaa.compilec0.util.Pos;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public final class Analyser {
 
-    Tokenizer tokenizer;
+    Lexer tokenizer;
     Assembler assembler = new Assembler();
 
-    private SymbolTable symbolTable = new SymbolTable();
+    private final SymbolTable symbolTable;
 
     /**
      * 符号表的层次
@@ -49,6 +51,78 @@ public final class Analyser {
         return localOffset++;
     }
 
+    /**
+     * 向当前函数添加一条指令
+     * 这里和 emitStart、emitHere 都不折叠常量，运算指令用 emitOperator
+     */
+    private void emit(Operation opt) {
+        nowInstructionFunction.addInstruction(opt);
+        nowInstructionFunctionIndex++;
+    }
+
+    private void emit(Operation opt, long x) {
+        nowInstructionFunction.addInstruction(opt, x);
+        nowInstructionFunctionIndex++;
+    }
+
+    /**
+     * 向开始函数添加一条指令
+     */
+    private void emitStart(Operation opt) {
+        assembler.startFunction.addInstruction(opt);
+        startFunctionInstructionIndex++;
+    }
+
+    private void emitStart(Operation opt, long x) {
+        assembler.startFunction.addInstruction(opt, x);
+        startFunctionInstructionIndex++;
+    }
+
+    /**
+     * 表达式既可能在全局（开始函数）里也可能在函数里，按所在的层添加
+     */
+    private void emitHere(Operation opt) {
+        if (level == 0) {
+            emitStart(opt);
+        } else {
+            emit(opt);
+        }
+    }
+
+    private void emitHere(Operation opt, long x) {
+        if (level == 0) {
+            emitStart(opt, x);
+        } else {
+            emit(opt, x);
+        }
+    }
+
+    /**
+     * 添加一条运算指令（算术、比较、类型转换），再试着折叠它
+     * 常量折叠只在这一处做：运算指令总是在它的操作数都生成完之后才添加，这时紧挨在前面的 push 就是它完整的操作数；
+     * 其他指令要么带操作数（push、loca、br 等），要么是存取、调用、输入输出，都不是能在编译时算出来的运算
+     */
+    private void emitOperator(Operation opt) {
+        emitHere(opt);
+        fold(level == 0 ? assembler.startFunction : nowInstructionFunction);
+    }
+
+    /**
+     * 开启常量折叠时，如果 function 的最后一条运算指令的操作数都是常量，就在编译时算出结果
+     * 折掉的指令要从对应的指令 index 里减掉，后面算跳转偏移时才对得上
+     */
+    private void fold(Function function) {
+        if (!foldConstants) {
+            return;
+        }
+        int removed = ConstantFolder.fold(function.getInstructions());
+        if (function == assembler.startFunction) {
+            startFunctionInstructionIndex -= removed;
+        } else {
+            nowInstructionFunctionIndex -= removed;
+        }
+    }
+
     /**
      * 开始函数的指令index
      */
@@ -60,10 +134,10 @@ public final class Analyser {
     private String initFunctionName = "INITIAL_FUNCTION";
 
     /**
-     * 记录当前编译到哪层函数下了
+     * 记录当前编译到哪层函数下了，存的是函数名的编号
      * 初始化为init
      */
-    private String nowFunctionName = "";
+    private int nowFunctionId;
 
     /**
      * 记录当前工作的指令应该添加的地方
@@ -72,38 +146,33 @@ public final class Analyser {
     private int nowInstructionFunctionIndex;
 
     /**
-     * 设置当前是否在while语句中
+     * 当前所在的最内层 while 语句，不在 while 中时为 null
      * 用于处理continue, break
      */
-    private boolean isInWhile = false;
-    private int impossibleWhileStart = 100000000;
-    private int startWhileIndex = impossibleWhileStart;
-    private int impossibleBrNum = 100000000;
+    private Loop loop;
 
     /**
-     * 所有的tokens
-     */
-    ArrayList<Token> allTokens;
-    /**
-     * 要获取的token的编号
+     * 按需读取的 token 流
      */
-    private int tokenIndex = -1;
+    private final TokenStream tokens;
 
     /**
-     * 当前偷看的 token
+     * 是否做常量折叠，见 ConstantFolder
      */
-    Token peekedToken = null;
+    private final boolean foldConstants;
 
-    public Analyser(Tokenizer tokenizer) {
-        this.allTokens = new ArrayList<>();
+    public Analyser(Lexer tokenizer) {
+        this(tokenizer, false);
+    }
+
+    public Analyser(Lexer tokenizer, boolean foldConstants) {
         this.tokenizer = tokenizer;
+        this.tokens = new TokenStream(tokenizer);
+        this.symbolTable = new SymbolTable(tokens.getIdentifiers());
+        this.foldConstants = foldConstants;
     }
 
     public Assembler analyse() throws CompileError {
-        /**
-         * 首先将所有的tokens存到list中
-         */
-        getAllTokens();
         /**
          * push主函数符号表
          */
@@ -111,48 +180,34 @@ public final class Analyser {
         /**
          * 设置工作函数为默认
          */
-        nowFunctionName = initFunctionName;
+        nowFunctionId = tokens.getIdentifiers().intern(initFunctionName);
 
         analyseProgram();
         //设置开始函数的index
         assembler.setStartFunctionGlobalOffset(assembler.globals.size());
         //调用call
-        Symbol symbol = symbolTable.findSymbolBySymbolName(0, "main", new Pos(0, 0));
+        Symbol symbol = symbolTable.findSymbolBySymbolName(0, "main", Pos.pack(0, 0));
         var stackAllocNum = 0;
         int callOffset;
         if (symbol == null) {
-            throw new AnalyzeError(ErrorCode.NoMainFunction, new Pos(0, 0));
+            throw new AnalyzeError(ErrorCode.NoMainFunction, Pos.pack(0, 0));
         } else if (symbol instanceof FunctionSymbol) {
             FunctionSymbol main = (FunctionSymbol) symbol;
-            callOffset = main.getOffset();
+            callOffset = (int) main.getOffset();
             if (main.getReturnType() != DataType.VOID) {
                 stackAllocNum = 1;
             }
         } else {
-            throw new AnalyzeError(ErrorCode.NoMainFunction, new Pos(0, 0));
+            throw new AnalyzeError(ErrorCode.NoMainFunction, Pos.pack(0, 0));
         }
-        assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.stackalloc, stackAllocNum));
-        assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.callname, callOffset));
+        emitStart(Operation.stackalloc, stackAllocNum);
+        emitStart(Operation.callname, callOffset);
         if (stackAllocNum == 1) {
-            assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.popn, 1));
+            emitStart(Operation.popn, 1);
         }
         return assembler;
     }
 
-    /**
-     * 获取所有的token到tokens
-     */
-    public void getAllTokens() throws TokenizeError {
-        while (true) {
-            var token = tokenizer.nextToken();
-            if (token.getTokenType().equals(TokenType.EOF)) {
-                this.allTokens.add(token);
-                break;
-            }
-            this.allTokens.add(token);
-        }
-    }
-
     /**
      * 查看下一个 Token
      *
@@ -160,27 +215,17 @@ public final class Analyser {
      * @throws TokenizeError
      */
     private Token peek() throws TokenizeError {
-        if (peekedToken == null) {
-            peekedToken = allTokens.get(tokenIndex + 1);
-        }
-        return peekedToken;
+        return tokens.peek();
     }
 
     /**
      * 获取下一个 Token
      *
      * @return 返回的是下一个token
-     * @throws TokenizeError 不会抛出错误目前
+     * @throws TokenizeError 词法错误在读到的时候才抛出
      */
     private Token next() throws TokenizeError {
-        if (peekedToken != null) {
-            var token = peekedToken;
-            peekedToken = null;
-            this.tokenIndex++;
-            return token;
-        } else {
-            return allTokens.get(++tokenIndex);
-        }
+        return tokens.next();
     }
 
     /**
@@ -188,8 +233,7 @@ public final class Analyser {
      * 即：回退一步
      */
     private void back() throws TokenizeError {
-        this.tokenIndex--;
-        peekedToken = null;
+        tokens.back();
     }
 
     /**
@@ -200,8 +244,7 @@ public final class Analyser {
      * @throws TokenizeError
      */
     private boolean check(TokenType tt) throws TokenizeError {
-        var token = peek();
-        return token.getTokenType() == tt;
+        return tokens.peekType(0) == tt;
     }
 
     /**
@@ -212,8 +255,7 @@ public final class Analyser {
      * @throws TokenizeError
      */
     private Token nextIf(TokenType tt) throws TokenizeError {
-        var token = peek();
-        if (token.getTokenType() == tt) {
+        if (tokens.peekType(0) == tt) {
             return next();
         } else {
             return null;
@@ -228,11 +270,10 @@ public final class Analyser {
      * @throws CompileError 如果类型不匹配
      */
     private Token expect(TokenType tt) throws CompileError {
-        var token = peek();
-        if (token.getTokenType() == tt) {
+        if (tokens.peekType(0) == tt) {
             return next();
         } else {
-            throw new ExpectedTokenError(tt, token);
+            throw new ExpectedTokenError(tt, peek());
         }
     }
 
@@ -274,7 +315,7 @@ public final class Analyser {
         } else if (token.getTokenType() == TokenType.VOID) {
             return DataType.VOID;
         } else {
-            throw new AnalyzeError(ErrorCode.NotExistDataType, token.getStartPos());
+            throw new AnalyzeError(ErrorCode.NotExistDataType, token.getStart());
         }
     }
 
@@ -293,7 +334,7 @@ public final class Analyser {
             } else if (nextPeekToken.getTokenType() == TokenType.LET_KW || nextPeekToken.getTokenType() == TokenType.CONST_KW) {
                 analyseDeclareStatement();
             } else {
-                throw new AnalyzeError(ErrorCode.InvalidInput, nextPeekToken.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidInput, nextPeekToken.getStart());
             }
             nextPeekToken = peek();
         }
@@ -313,25 +354,25 @@ public final class Analyser {
         var ident = expect(TokenType.IDENT);
 
         //设置工作函数
-        nowFunctionName = ident.getValueString();
+        nowFunctionId = ident.getId();
         nowInstructionFunction = new Function(globalOffset);
         nowInstructionFunctionIndex = 0;
 
         //添加global
         assembler.globals.add(new Global(ident.getValueString(), GlobalType.FUNCTION));
         //添加符号表
-        symbolTable.addFunctionSymbol(DataType.VOID, ident.getValueString(), level, getNextGlobalOffset(), ident.getStartPos());
+        symbolTable.addFunctionSymbol(DataType.VOID, ident.getId(), level, getNextGlobalOffset(), ident.getStart());
 
         //(
         expect(TokenType.L_PAREN);
         var token = peek();
         if (token.getTokenType() != TokenType.R_PAREN) {
             //参数列表
-            analyseFunctionParamList(ident.getValueString());
+            analyseFunctionParamList(ident.getId());
         }
 
         //设置函数的参数大小
-        var paramSize = symbolTable.getParamSizeByFunctionName(ident.getValueString(), ident.getStartPos());
+        var paramSize = symbolTable.getParamSizeByFunctionName(ident.getId(), ident.getStart());
         nowInstructionFunction.setParamSize(paramSize);
 
         //)
@@ -344,42 +385,43 @@ public final class Analyser {
         //设置函数的返回类型
         var dataType = getDataTypeFromToken(type);
         nowInstructionFunction.setReturnType(dataType);
-        symbolTable.setFunctionSymbolReturnType(ident.getValueString(), dataType, type.getStartPos());
+        symbolTable.setFunctionSymbolReturnType(ident.getId(), dataType, type.getStart());
 
         initLocalOffset();
         analyseBlockStatement();
         //设置函数中局部变量的数目
         nowInstructionFunction.setLocalVariableSize(localOffset);
-        symbolTable.setFunctionLocalVariableSize(ident.getValueString(), localOffset, ident.getStartPos());
+        symbolTable.setFunctionLocalVariableSize(ident.getId(), localOffset, ident.getStart());
 
         //判断函数是否退出
-        var flag = false;
-        for (Instruction instruction : nowInstructionFunction.getInstructions()) {
-            if (instruction.getOpt() == Operation.ret) {
-                flag = true;
-                break;
-            }
+        //没有返回值的函数只要最后一条不是 ret 就补一条，否则某条路径走到末尾时虚拟机会报错
+        var instructions = nowInstructionFunction.getInstructions();
+        boolean flag;
+        if (dataType == DataType.VOID) {
+            flag = instructions.size() > 0 && instructions.getOperation(instructions.size() - 1) == Operation.ret;
+        } else {
+            flag = instructions.indexOf(Operation.ret) >= 0;
         }
         if (!flag)
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.ret));
+            emit(Operation.ret);
         //退出时将工作函数目录设置回默认的并添加到functions
         assembler.addFunction(nowInstructionFunction);
-        nowFunctionName = initFunctionName;
+        nowFunctionId = tokens.getIdentifiers().intern(initFunctionName);
     }
 
     /**
      * function_param_list -> function_param (',' function_param)*
      */
-    private void analyseFunctionParamList(String functionName) throws CompileError {
+    private void analyseFunctionParamList(int functionId) throws CompileError {
         //参数的index
         int paramIndex = 0;
         //参数
-        analyseFunctionParam(functionName, paramIndex);
+        analyseFunctionParam(functionId, paramIndex);
         paramIndex++;
         var next = peek();
         while (next.getTokenType() == TokenType.COMMA) {
             expect(TokenType.COMMA);
-            analyseFunctionParam(functionName, paramIndex);
+            analyseFunctionParam(functionId, paramIndex);
             paramIndex++;
             next = peek();
         }
@@ -390,7 +432,7 @@ public final class Analyser {
      *
      * @throws CompileError
      */
-    private void analyseFunctionParam(String functionName, int paramIndex) throws CompileError {
+    private void analyseFunctionParam(int functionId, int paramIndex) throws CompileError {
         var next = peek();
         if (next.getTokenType() == TokenType.CONST_KW) {
             //const
@@ -403,7 +445,7 @@ public final class Analyser {
             var type = expectType();
             DataType dataType = getDataTypeFromToken(type);
             //添加到函数的参数表中
-            symbolTable.addFunctionParamSymbol(functionName, dataType, ident.getValueString(), level, paramIndex, ident.getStartPos(), true);
+            symbolTable.addFunctionParamSymbol(functionId, dataType, ident.getId(), level, paramIndex, ident.getStart(), true);
 
         } else if (next.getTokenType() == TokenType.IDENT) {
             //IDENT
@@ -413,7 +455,7 @@ public final class Analyser {
             //ty
             var type = expectType();
             DataType dataType = getDataTypeFromToken(type);
-            symbolTable.addFunctionParamSymbol(functionName, dataType, ident.getValueString(), level, paramIndex, ident.getStartPos(), false);
+            symbolTable.addFunctionParamSymbol(functionId, dataType, ident.getId(), level, paramIndex, ident.getStart(), false);
         }
     }
 
@@ -429,7 +471,7 @@ public final class Analyser {
         } else if (nextPeekToken.getTokenType() == TokenType.CONST_KW) {
             analyseConstDeclareStatement();
         } else {
-            throw new AnalyzeError(ErrorCode.InvalidInput, nextPeekToken.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidInput, nextPeekToken.getStart());
         }
     }
 
@@ -447,7 +489,7 @@ public final class Analyser {
         var type = expectType();
         var dataType = getDataTypeFromToken(type);
         if (dataType == DataType.VOID) {
-            throw new AnalyzeError(ErrorCode.InvalidDataType, type.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidDataType, type.getStart());
         }
 
         //判断这是一个全局变量还是一个局部变量
@@ -457,9 +499,9 @@ public final class Analyser {
             assembler.addGlobal(new Global(ident.getValueString(), GlobalType.VARIABLE));
         } else {
             //如果是局部变量，还要判断一下是否和函数的参数重名
-            var param = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionName, ident.getValueString(), ident.getStartPos());
+            var param = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionId, ident.getId(), ident.getStart());
             if (param != null) {
-                throw new AnalyzeError(ErrorCode.DuplicateWithTheParam, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.DuplicateWithTheParam, ident.getStart());
             }
             offset = getNextLocalOffset();
         }
@@ -468,25 +510,21 @@ public final class Analyser {
             expect(TokenType.ASSIGN);
             //先在栈上加载一个地址
             if (level == 0) {
-                assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.globa, offset));
+                emitStart(Operation.globa, offset);
             } else {
-                nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.loca, offset));
+                emit(Operation.loca, offset);
             }
             var tempDataType = analyseExpression();
             if (tempDataType != dataType) {
-                throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStart());
             }
             //加入符号表
-            symbolTable.addVariableSymbol(dataType, ident.getValueString(), level, offset, ident.getStartPos(), true);
+            symbolTable.addVariableSymbol(dataType, ident.getId(), level, offset, ident.getStart(), true);
 
             //生成指令
-            if (level == 0) {
-                assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.store64));
-            } else {
-                nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.store64));
-            }
+            emitHere(Operation.store64);
         } else {
-            symbolTable.addVariableSymbol(dataType, ident.getValueString(), level, offset, ident.getStartPos(), true);
+            symbolTable.addVariableSymbol(dataType, ident.getId(), level, offset, ident.getStart(), true);
         }
         //;
         expect(TokenType.SEMICOLON);
@@ -510,32 +548,35 @@ public final class Analyser {
         if (level == 0) {
             offset = getNextGlobalOffset();
             assembler.addGlobal(new Global(ident.getValueString(), GlobalType.CONSTANT));
-            assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.globa, offset));
+            emitStart(Operation.globa, offset);
         } else {
-            var param = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionName, ident.getValueString(), ident.getStartPos());
+            var param = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionId, ident.getId(), ident.getStart());
             if (param != null) {
-                throw new AnalyzeError(ErrorCode.DuplicateWithTheParam, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.DuplicateWithTheParam, ident.getStart());
             }
             offset = getNextLocalOffset();
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.loca, offset));
+            emit(Operation.loca, offset);
         }
         //=
         expect(TokenType.ASSIGN);
         //expr
+        var instructions = (level == 0 ? assembler.startFunction : nowInstructionFunction).getInstructions();
+        var expressionStart = instructions.size();
         var tempDataType = analyseExpression();
         if (tempDataType != dataType) {
-            throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStart());
         }
         //;
         expect(TokenType.SEMICOLON);
         //加入符号表
-        symbolTable.addConstantSymbol(dataType, ident.getValueString(), level, offset, ident.getStartPos());
-        //生成指令
-        if (level == 0) {
-            assembler.startFunction.addInstruction(new Instruction(startFunctionInstructionIndex++, Operation.store64));
-        } else {
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.store64));
+        var symbol = symbolTable.addConstantSymbol(dataType, ident.getId(), level, offset, ident.getStart());
+        //初始值折叠成了一条 push 时记下它，引用这个常量时直接 push
+        if (foldConstants && instructions.size() == expressionStart + 1
+                && instructions.getOperation(expressionStart) == Operation.push) {
+            symbol.setValue(instructions.getOperand(expressionStart));
         }
+        //生成指令
+        emitHere(Operation.store64);
     }
 
     /**
@@ -640,20 +681,20 @@ public final class Analyser {
         var next = peek();
         if (next.getTokenType() != TokenType.SEMICOLON) {
             //expr
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.arga, 0));
+            emit(Operation.arga, 0);
             var dataType = analyseExpression();
             if (dataType != nowInstructionFunction.getReturnType()) {
-                throw new AnalyzeError(ErrorCode.InvalidReturnType, next.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidReturnType, next.getStart());
             }
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.store64));
+            emit(Operation.store64);
         } else {
             if (nowInstructionFunction.getReturnType() != DataType.VOID) {
-                throw new AnalyzeError(ErrorCode.InvalidReturnType, next.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidReturnType, next.getStart());
             }
         }
         //;
         expect(TokenType.SEMICOLON);
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.ret));
+        emit(Operation.ret);
     }
 
     /**
@@ -664,12 +705,12 @@ public final class Analyser {
     private void analyseContinueStatement() throws CompileError {
         //continue
         var continueToken = expect(TokenType.CONTINUE_KW);
-        if (!isInWhile) {
-            throw new AnalyzeError(ErrorCode.InvalidContinue, continueToken.getStartPos());
+        if (loop == null) {
+            throw new AnalyzeError(ErrorCode.InvalidContinue, continueToken.getStart());
         }
         //跳转回到while开始的语句
-        int num = startWhileIndex - nowInstructionFunctionIndex - 1;
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.br, num));
+        int num = loop.start - nowInstructionFunctionIndex - 1;
+        emit(Operation.br, num);
         //;
         expect(TokenType.SEMICOLON);
     }
@@ -682,10 +723,12 @@ public final class Analyser {
     private void analyseBreakStatement() throws CompileError {
         //break
         var breakToken = expect(TokenType.BREAK_KW);
-        if (!isInWhile) {
-            throw new AnalyzeError(ErrorCode.InvalidBreak, breakToken.getStartPos());
+        if (loop == null) {
+            throw new AnalyzeError(ErrorCode.InvalidBreak, breakToken.getStart());
         }
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.br, impossibleBrNum));
+        //跳出while的偏移等while结束时回填
+        loop.addBreak(nowInstructionFunctionIndex);
+        emit(Operation.br, 0);
         //;
         expect(TokenType.SEMICOLON);
     }
@@ -696,46 +739,39 @@ public final class Analyser {
      * @throws CompileError
      */
     private void analyseWhileStatement() throws CompileError {
-        var oldStartWhileIndex = startWhileIndex;
-        startWhileIndex = nowInstructionFunctionIndex;
-        isInWhile = true;
+        loop = new Loop(loop, nowInstructionFunctionIndex);
         //while
         var whileToken = expect(TokenType.WHILE_KW);
         //expr
         var dataType = analyseExpression();
         if (dataType != DataType.INT && dataType != DataType.DOUBLE && dataType != DataType.BOOL) {
-            throw new AnalyzeError(ErrorCode.InvalidDataType, whileToken.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidDataType, whileToken.getStart());
         }
         //如果为真就继续执行
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.brtrue, 1));
+        emit(Operation.brtrue, 1);
         //如果为假就跳过block
         int num = 0;
         int jumpBlockIndex = nowInstructionFunctionIndex++;
-        Instruction brInstruction = new Instruction(jumpBlockIndex, Operation.br, num);
-        nowInstructionFunction.addInstruction(brInstruction);
+        nowInstructionFunction.addInstruction(Operation.br, num);
 
         //block
         analyseBlockStatement();
 
         //跳转回到while开始的语句
-        num = startWhileIndex - nowInstructionFunctionIndex - 1;
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.br, num));
+        num = loop.start - nowInstructionFunctionIndex - 1;
+        emit(Operation.br, num);
 
         //设置那个跳过block的偏移
-        brInstruction = nowInstructionFunction.getInstructions().get(jumpBlockIndex);
         num = nowInstructionFunctionIndex - jumpBlockIndex - 1;
-        brInstruction.setX(num);
-        isInWhile = false;
-
-        //判断一下哪里有break
-        for (int i = 0; i < nowInstructionFunction.getInstructions().size(); i++) {
-            var temp = nowInstructionFunction.getInstructions().get(i);
-            if ((int) temp.getX() == impossibleBrNum) {
-                num = nowInstructionFunctionIndex - i - 1;
-                temp.setX(num);
-            }
+        nowInstructionFunction.getInstructions().setOperand(jumpBlockIndex, num);
+
+        //回填这个while里的break，跳到while后面
+        var instructions = nowInstructionFunction.getInstructions();
+        for (int i = 0; i < loop.breakCount; i++) {
+            int index = loop.breaks[i];
+            instructions.setOperand(index, nowInstructionFunctionIndex - index - 1);
         }
-        startWhileIndex = oldStartWhileIndex;
+        loop = loop.outer;
     }
 
     /**
@@ -749,15 +785,14 @@ public final class Analyser {
         //expr
         var dataType = analyseExpression();
         if (dataType != DataType.INT && dataType != DataType.DOUBLE && dataType != DataType.BOOL) {
-            throw new AnalyzeError(ErrorCode.InvalidDataType, ifToken.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidDataType, ifToken.getStart());
         }
         //如果为真的话跳转执行
-        nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.brtrue, 1)); //8
+        emit(Operation.brtrue, 1); //8
         //如果为假的话跳过block执行序列
         int num = 0;
         int jumpBlockIndex = nowInstructionFunctionIndex++; //9
-        Instruction brInstruction = new Instruction(jumpBlockIndex, Operation.br, num);
-        nowInstructionFunction.addInstruction(brInstruction);
+        nowInstructionFunction.addInstruction(Operation.br, num);
 
         //block
         analyseBlockStatement();  //11-12 此时的nowIndex = 13
@@ -765,13 +800,11 @@ public final class Analyser {
         //跳到整个if语句执行结束后的语句
         num = 0;
         int jumpAllIfIndex = nowInstructionFunctionIndex++;               //12
-        Instruction brEndIfInstruction = new Instruction(jumpAllIfIndex, Operation.br, num);
-        nowInstructionFunction.addInstruction(brEndIfInstruction);
+        nowInstructionFunction.addInstruction(Operation.br, num);
 
         //给跳过block的语句设置好偏移
-        var temp = nowInstructionFunction.getInstructions().get(jumpBlockIndex);
         num = nowInstructionFunctionIndex - jumpBlockIndex - 1;
-        temp.setX(num);
+        nowInstructionFunction.getInstructions().setOperand(jumpBlockIndex, num);
 
         int elseNum = 0;
         int elseEndIndex;
@@ -789,15 +822,14 @@ public final class Analyser {
             else if (next.getTokenType() == TokenType.L_BRACE) {
                 analyseBlockStatement();
                 elseEndIndex = nowInstructionFunctionIndex++;
-                nowInstructionFunction.addInstruction(new Instruction(elseEndIndex, Operation.br, elseNum));
+                nowInstructionFunction.addInstruction(Operation.br, elseNum);
             }
         }
 
         //给跳过接下来的IF设置好偏移
         //nowIndex 13
-        temp = nowInstructionFunction.getInstructions().get(jumpAllIfIndex);
         num = nowInstructionFunctionIndex - jumpAllIfIndex - 1;
-        temp.setX(num);
+        nowInstructionFunction.getInstructions().setOperand(jumpAllIfIndex, num);
     }
 
     /**
@@ -853,7 +885,7 @@ public final class Analyser {
             var boolSymbol = next();
             var tempDataType = analyseAdditiveExpression();
             if (tempDataType != dataType) {
-                throw new AnalyzeError(ErrorCode.InvalidDataType, boolSymbol.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidDataType, boolSymbol.getStart());
             }
             Operation operation;
             if (dataType == DataType.INT)
@@ -861,31 +893,31 @@ public final class Analyser {
             else if (dataType == DataType.DOUBLE)
                 operation = Operation.cmpf;
             else {
-                throw new AnalyzeError(ErrorCode.InvalidOperator, boolSymbol.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidOperator, boolSymbol.getStart());
             }
-            nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, operation));
+            emitOperator(operation);
             switch (boolSymbol.getTokenType()) {
                 case EQ:
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.not));
+                    emitOperator(Operation.not);
                     break;
                 case NEQ:
                     break;
                 case GT:
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.setgt));
+                    emitOperator(Operation.setgt);
                     break;
                 case GE:
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.setlt));
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.not));
+                    emitOperator(Operation.setlt);
+                    emitOperator(Operation.not);
                     break;
                 case LT:
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.setlt));
+                    emitOperator(Operation.setlt);
                     break;
                 case LE:
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.setgt));
-                    nowInstructionFunction.addInstruction(new Instruction(nowInstructionFunctionIndex++, Operation.not));
+                    emitOperator(Operation.setgt);
+                    emitOperator(Operation.not);
                     break;
                 default:
-                    throw new AnalyzeError(ErrorCode.InvalidOperator, boolSymbol.getStartPos());
+                    throw new AnalyzeError(ErrorCode.InvalidOperator, boolSymbol.getStart());
             }
             dataType = DataType.BOOL;
         }
@@ -904,42 +936,36 @@ public final class Analyser {
         var ident = expect(TokenType.IDENT);
         Symbol symbol;
         //先判断是不是参数
-        symbol = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionName, ident.getValueString(), ident.getStartPos());
+        symbol = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionId, ident.getId(), ident.getStart());
         if (symbol == null) {
             //找不到在去本层和上层的符号表中寻找
-            symbol = symbolTable.findSymbolBySymbolName(level, ident.getValueString(), ident.getStartPos());
+            symbol = symbolTable.findSymbolBySymbolName(level, ident.getId(), ident.getStart());
         }
         if (symbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStart());
         }
 
         if (symbol instanceof ConstantSymbol) {
-            throw new AnalyzeError(ErrorCode.AssignToConstant, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.AssignToConstant, ident.getStart());
         }
         if (symbol instanceof FunctionSymbol) {
-            throw new AnalyzeError(ErrorCode.AssignToFunction, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.AssignToFunction, ident.getStart());
         }
         if (symbol instanceof ParamSymbol) {
             ParamSymbol paramSymbol = (ParamSymbol) symbol;
             if (paramSymbol.isConstant()) {
-                throw new AnalyzeError(ErrorCode.AssignToConstantParam, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.AssignToConstantParam, ident.getStart());
             }
         }
         //在栈顶放上地址，根据ident的类型的不同，决定去哪里找
         //添加instructions
-        Function beAddedFunction;
-        int instructionIndex;
         Operation operation;
-        int offset = symbol.getOffset();
+        int offset = (int) symbol.getOffset();
         if (level == 0) {
             //全局中引用
-            beAddedFunction = assembler.startFunction;
-            instructionIndex = startFunctionInstructionIndex++;
             operation = Operation.globa;
         } else {
             //局部中引用
-            beAddedFunction = nowInstructionFunction;
-            instructionIndex = nowInstructionFunctionIndex++;
             if (symbol.getLevel() == 0) {
                 //引用全局量
                 operation = Operation.globa;
@@ -954,7 +980,7 @@ public final class Analyser {
                 operation = Operation.loca;
             }
         }
-        beAddedFunction.addInstruction(new Instruction(instructionIndex, operation, offset));
+        emitHere(operation, offset);
         var dataType = symbol.getDataType();
         //=
         expect(TokenType.ASSIGN);
@@ -962,14 +988,13 @@ public final class Analyser {
         var tempDataType = analyseAdditiveExpression();
         //赋值类型不匹配
         if (dataType != tempDataType) {
-            throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidDataType, ident.getStart());
         }
         //如果是普通变量，要将initialize赋值成true
         if (symbol instanceof VariableSymbol) {
-            symbolTable.setVariableInitialized(level, ident.getValueString(), ident.getStartPos());
+            symbolTable.setVariableInitialized(level, ident.getId(), ident.getStart());
         }
-        instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-        beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.store64));
+        emitHere(Operation.store64);
     }
 
     /**
@@ -985,20 +1010,11 @@ public final class Analyser {
             var tempDataType = analyseMultExpression();
 
             if (tempDataType != dataType) {
-                throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
             }
 
             //添加instructions，要根据环境不同决定添加到什么地方
-            Function beAddedFunction;
-            int instructionIndex;
             Operation operation;
-            if (level == 0) {
-                beAddedFunction = assembler.startFunction;
-                instructionIndex = startFunctionInstructionIndex++;
-            } else {
-                beAddedFunction = nowInstructionFunction;
-                instructionIndex = nowInstructionFunctionIndex++;
-            }
             switch (nameToken.getTokenType()) {
                 case PLUS:
                     if (dataType == DataType.INT) {
@@ -1006,7 +1022,7 @@ public final class Analyser {
                     } else if (dataType == DataType.DOUBLE) {
                         operation = Operation.addf;
                     } else {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
                     }
                     break;
                 case MINUS:
@@ -1015,13 +1031,13 @@ public final class Analyser {
                     } else if (dataType == DataType.DOUBLE) {
                         operation = Operation.subf;
                     } else {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
                     }
                     break;
                 default:
-                    throw new AnalyzeError(ErrorCode.InvalidOperator, nameToken.getStartPos());
+                    throw new AnalyzeError(ErrorCode.InvalidOperator, nameToken.getStart());
             }
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, operation));
+            emitOperator(operation);
         }
         return dataType;
     }
@@ -1038,19 +1054,10 @@ public final class Analyser {
             var tempDataType = analyseAsExpression();
 
             if (tempDataType != dataType) {
-                throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
             }
 
-            Function beAddedFunction;
-            int instructionIndex;
             Operation operation;
-            if (level == 0) {
-                beAddedFunction = assembler.startFunction;
-                instructionIndex = startFunctionInstructionIndex++;
-            } else {
-                beAddedFunction = nowInstructionFunction;
-                instructionIndex = nowInstructionFunctionIndex++;
-            }
             switch (nameToken.getTokenType()) {
                 case MUL:
                     if (dataType == DataType.INT) {
@@ -1058,7 +1065,7 @@ public final class Analyser {
                     } else if (dataType == DataType.DOUBLE) {
                         operation = Operation.mulf;
                     } else {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
                     }
                     break;
                 case DIV:
@@ -1067,13 +1074,13 @@ public final class Analyser {
                     } else if (dataType == DataType.DOUBLE) {
                         operation = Operation.divf;
                     } else {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, nameToken.getStart());
                     }
                     break;
                 default:
-                    throw new AnalyzeError(ErrorCode.InvalidOperator, nameToken.getStartPos());
+                    throw new AnalyzeError(ErrorCode.InvalidOperator, nameToken.getStart());
             }
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, operation));
+            emitOperator(operation);
         }
         return dataType;
     }
@@ -1090,16 +1097,7 @@ public final class Analyser {
             //ty
             var type = expectType();
             var tempDataType = getDataTypeFromToken(type);
-            Function beAddedFunction;
-            int instructionIndex;
             Operation operation;
-            if (level == 0) {
-                beAddedFunction = assembler.startFunction;
-                instructionIndex = startFunctionInstructionIndex++;
-            } else {
-                beAddedFunction = nowInstructionFunction;
-                instructionIndex = nowInstructionFunctionIndex++;
-            }
             if (dataType.equals(DataType.INT) && tempDataType.equals(DataType.INT)) {
                 operation = Operation.nop;
             } else if (dataType.equals(DataType.INT) && tempDataType.equals(DataType.DOUBLE)) {
@@ -1109,9 +1107,9 @@ public final class Analyser {
             } else if (dataType.equals(DataType.DOUBLE) && tempDataType.equals(DataType.INT)) {
                 operation = Operation.ftoi;
             } else {
-                throw new AnalyzeError(ErrorCode.InvalidDataChange, type.getStartPos());
+                throw new AnalyzeError(ErrorCode.InvalidDataChange, type.getStart());
             }
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, operation));
+            emitOperator(operation);
 
             dataType = tempDataType;
         }
@@ -1128,17 +1126,8 @@ public final class Analyser {
         if (token.getTokenType() == TokenType.MINUS) {
             expect(TokenType.MINUS);
             dataType = analyseSingleExpression();
-            Function beAddedFunction;
-            int instructionIndex;
-            if (level == 0) {
-                beAddedFunction = assembler.startFunction;
-                instructionIndex = startFunctionInstructionIndex++;
-            } else {
-                beAddedFunction = nowInstructionFunction;
-                instructionIndex = nowInstructionFunctionIndex++;
-            }
             Operation operation = (dataType.equals(DataType.INT)) ? Operation.negi : Operation.negf;
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, operation));
+            emitOperator(operation);
         } else {
             dataType = analysePrimaryExpression();
         }
@@ -1174,7 +1163,7 @@ public final class Analyser {
             dataType = analyseExpression();
             expect(TokenType.R_PAREN);
         } else {
-            throw new AnalyzeError(ErrorCode.InvalidInput, token.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidInput, token.getStart());
         }
         return dataType;
     }
@@ -1188,13 +1177,6 @@ public final class Analyser {
         DataType dataType;
         //IDENT
         var ident = expect(TokenType.IDENT);
-        Function beAddedFunction;
-        int instructionIndex;
-        if (level == 0) {
-            beAddedFunction = assembler.startFunction;
-        } else {
-            beAddedFunction = nowInstructionFunction;
-        }
         var libFunc = LibFuncUtils.isLibFunction(ident);
         if (libFunc != LibFunctions.NOTLIBFUN) {
             switch (libFunc) {
@@ -1202,8 +1184,7 @@ public final class Analyser {
                 case GETINT: {
                     expect(TokenType.L_PAREN);
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.scani));
+                    emitHere(Operation.scani);
                     dataType = DataType.INT;
                     break;
                 }
@@ -1211,8 +1192,7 @@ public final class Analyser {
                 case GETDOUBLE: {
                     expect(TokenType.L_PAREN);
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.scanf));
+                    emitHere(Operation.scanf);
                     dataType = DataType.DOUBLE;
                     break;
                 }
@@ -1220,8 +1200,7 @@ public final class Analyser {
                 case GETCHAR: {
                     expect(TokenType.L_PAREN);
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.scanc));
+                    emitHere(Operation.scanc);
                     dataType = DataType.INT;
                     break;
                 }
@@ -1230,11 +1209,10 @@ public final class Analyser {
                     var l = expect(TokenType.L_PAREN);
                     var tempDataType = analyseExpression();
                     if (tempDataType != DataType.INT) {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStart());
                     }
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.printi));
+                    emitHere(Operation.printi);
                     dataType = DataType.VOID;
                     break;
                 }
@@ -1243,11 +1221,10 @@ public final class Analyser {
                     var l = expect(TokenType.L_PAREN);
                     var tempDataType = analyseExpression();
                     if (tempDataType != DataType.DOUBLE) {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStart());
                     }
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.printf));
+                    emitHere(Operation.printf);
                     dataType = DataType.VOID;
                     break;
                 }
@@ -1256,10 +1233,9 @@ public final class Analyser {
                     var l = expect(TokenType.L_PAREN);
                     var tempDataType = analyseExpression();
                     if (tempDataType != DataType.INT) {
-                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStartPos());
+                        throw new AnalyzeError(ErrorCode.InvalidDataType, l.getStart());
                     }
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.printc));
+                    emitHere(Operation.printc);
                     expect(TokenType.R_PAREN);
                     dataType = DataType.VOID;
                     break;
@@ -1271,10 +1247,8 @@ public final class Analyser {
                     String temp = str.getValueString();
                     assembler.addGlobal(new Global(temp, GlobalType.STRING));
                     var num = assembler.globals.size() - 1;
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.push, num));
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.prints));
+                    emitHere(Operation.push, num);
+                    emitHere(Operation.prints);
                     expect(TokenType.R_PAREN);
                     dataType = DataType.VOID;
                     break;
@@ -1283,21 +1257,20 @@ public final class Analyser {
                 case PUTLN: {
                     expect(TokenType.L_PAREN);
                     expect(TokenType.R_PAREN);
-                    instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-                    beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.println));
+                    emitHere(Operation.println);
                     dataType = DataType.VOID;
                     break;
                 }
                 default:
-                    throw new AnalyzeError(ErrorCode.NoSuchLibFunction, ident.getStartPos());
+                    throw new AnalyzeError(ErrorCode.NoSuchLibFunction, ident.getStart());
             }
         } else {
-            Symbol symbol = symbolTable.findSymbolBySymbolName(level, ident.getValueString(), ident.getStartPos());
+            Symbol symbol = symbolTable.findSymbolBySymbolName(level, ident.getId(), ident.getStart());
             if (symbol == null) {
-                throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStart());
             }
             if (!(symbol instanceof FunctionSymbol)) {
-                throw new AnalyzeError(ErrorCode.NotAFunction, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.NotAFunction, ident.getStart());
             }
             var paramIndex = -1;
             FunctionSymbol functionSymbol = (FunctionSymbol) symbol;
@@ -1309,8 +1282,7 @@ public final class Analyser {
                 stackAllocNum = 1;
             }
 
-            instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.stackalloc, stackAllocNum));
+            emitHere(Operation.stackalloc, stackAllocNum);
             //(
             expect(TokenType.L_PAREN);
             if (!check(TokenType.R_PAREN)) {
@@ -1320,10 +1292,10 @@ public final class Analyser {
                     if (paramIndex < functionSymbol.getParamsSize()) {
                         //参数类型不匹配
                         if (functionSymbol.getParamDataTypeByIndex(paramIndex) != tempDataType) {
-                            throw new AnalyzeError(ErrorCode.FunctionParamDataTypeNotMap, ident.getStartPos());
+                            throw new AnalyzeError(ErrorCode.FunctionParamDataTypeNotMap, ident.getStart());
                         }
                     } else {
-                        throw new AnalyzeError(ErrorCode.FunctionParamsNotSuit, ident.getStartPos());
+                        throw new AnalyzeError(ErrorCode.FunctionParamsNotSuit, ident.getStart());
                     }
                     if (check(TokenType.R_PAREN)) {
                         break;
@@ -1334,10 +1306,9 @@ public final class Analyser {
             //)
             expect(TokenType.R_PAREN);
             if (paramIndex != functionSymbol.getParamsSize() - 1) {
-                throw new AnalyzeError(ErrorCode.FunctionParamsNotSuit, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.FunctionParamsNotSuit, ident.getStart());
             }
-            instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-            beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.callname, functionSymbol.getOffset()));
+            emitHere(Operation.callname, functionSymbol.getOffset());
         }
         return dataType;
     }
@@ -1352,40 +1323,39 @@ public final class Analyser {
         Symbol symbol;
         //先判断是不是函数的参数
         if (level != 0) {
-            symbol = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionName, ident.getValueString(), ident.getStartPos());
+            symbol = symbolTable.findFunctionParamSymbolBySymbolName(nowFunctionId, ident.getId(), ident.getStart());
             if (symbol == null) {
-                symbol = symbolTable.findSymbolBySymbolName(level, ident.getValueString(), ident.getStartPos());
+                symbol = symbolTable.findSymbolBySymbolName(level, ident.getId(), ident.getStart());
             }
         }
         //全局
         else {
-            symbol = symbolTable.findSymbolBySymbolName(level, ident.getValueString(), ident.getStartPos());
+            symbol = symbolTable.findSymbolBySymbolName(level, ident.getId(), ident.getStart());
         }
 
         if (symbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStartPos());
+            throw new AnalyzeError(ErrorCode.NotDeclared, ident.getStart());
         }
         if (symbol instanceof VariableSymbol) {
             VariableSymbol _symbol = (VariableSymbol) symbol;
             if (!_symbol.isInitialized()) {
-                throw new AnalyzeError(ErrorCode.NotInitialized, ident.getStartPos());
+                throw new AnalyzeError(ErrorCode.NotInitialized, ident.getStart());
             }
         }
         dataType = symbol.getDataType();
+        //值已知的常量直接 push
+        if (foldConstants && symbol instanceof ConstantSymbol && ((ConstantSymbol) symbol).isValueKnown()) {
+            emitHere(Operation.push, ((ConstantSymbol) symbol).getValue());
+            return dataType;
+        }
         //添加instructions
-        Function beAddedFunction;
-        int instructionIndex;
         Operation operation;
-        int offset = symbol.getOffset();
+        int offset = (int) symbol.getOffset();
         if (level == 0) {
             //全局中引用
-            beAddedFunction = assembler.startFunction;
-            instructionIndex = startFunctionInstructionIndex++;
             operation = Operation.globa;
         } else {
             //局部中引用
-            beAddedFunction = nowInstructionFunction;
-            instructionIndex = nowInstructionFunctionIndex++;
             if (symbol.getLevel() == 0) {
                 //引用全局量
                 operation = Operation.globa;
@@ -1400,9 +1370,8 @@ public final class Analyser {
                 operation = Operation.loca;
             }
         }
-        beAddedFunction.addInstruction(new Instruction(instructionIndex, operation, offset));
-        instructionIndex = (level == 0) ? startFunctionInstructionIndex++ : nowInstructionFunctionIndex++;
-        beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.load64));
+        emitHere(operation, offset);
+        emitHere(Operation.load64);
         return dataType;
     }
 
@@ -1412,21 +1381,13 @@ public final class Analyser {
     private DataType analyseLiteralExpression() throws CompileError {
         DataType dataType;
         var token = next();
-        Function beAddedFunction;
-        int instructionIndex;
-        int num = 0;
-        if (level == 0) {
-            beAddedFunction = assembler.startFunction;
-            instructionIndex = startFunctionInstructionIndex++;
-        } else {
-            beAddedFunction = nowInstructionFunction;
-            instructionIndex = nowInstructionFunctionIndex++;
-        }
+        long num = 0;
         if (token.getTokenType() == TokenType.UINT_LITERAL) {
-            num = (int) token.getValue();
+            num = token.getBits();
             dataType = DataType.INT;
         } else if (token.getTokenType() == TokenType.DOUBLE_LITERAL) {
-            //TODO
+            // push 的操作数就是浮点数的 IEEE 754 表示
+            num = token.getBits();
             dataType = DataType.DOUBLE;
         } else if (token.getTokenType() == TokenType.STRING_LITERAL) {
             String temp = token.getValueString();
@@ -1437,9 +1398,34 @@ public final class Analyser {
             //TODO
             dataType = DataType.CHAR;
         } else {
-            throw new AnalyzeError(ErrorCode.InvalidInput, token.getStartPos());
+            throw new AnalyzeError(ErrorCode.InvalidInput, token.getStart());
         }
-        beAddedFunction.addInstruction(new Instruction(instructionIndex, Operation.push, num));
+        emitHere(Operation.push, num);
         return dataType;
     }
-}
\ No newline at end of file
+
+    /**
+     * 一层 while 语句
+     * break 先生成偏移为 0 的 br，下标记在 breaks 里，while 结束时一起回填，
+     * 每个 break 只回填一次，不用扫描整个函数
+     */
+    private static final class Loop {
+        final Loop outer;
+        //条件的第一条指令，continue 跳到这里
+        final int start;
+        int[] breaks = new int[4];
+        int breakCount = 0;
+
+        Loop(Loop outer, int start) {
+            this.outer = outer;
+            this.start = start;
+        }
+
+        void addBreak(int index) {
+            if (breakCount == breaks.length) {
+                breaks = Arrays.copyOf(breaks, breakCount * 2);
+            }
+            breaks[breakCount++] = index;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.buaa.compilec0.analyser;
+
+import com.buaa.compilec0.assembler.InstructionBuffer;
+import com.buaa.compilec0.assembler.Operation;
+
+/**
+ * 常量折叠
+ * Analyser 每生成一条运算指令就调用一次 fold：如果这条指令的操作数正好是紧挨在它前面的 push，
+ * 就在编译时算出结果，把这几条指令换成一条 push
+ * 表达式内部没有跳转目标（c0 没有短路求值），语句开头也不可能是消耗栈上已有值的运算，
+ * 所以紧挨着的 push 一定就是这条指令的操作数
+ * 结果和虚拟机执行时逐位相同：整数运算按 64 位补码回绕，浮点数按 IEEE 754 双精度，
+ * 除以 0 和 Long.MIN_VALUE / -1 留到运行时，保留运行时的行为
+ */
+public final class ConstantFolder {
+
+    private ConstantFolder() {
+    }
+
+    /**
+     * 尝试折叠 code 的最后一条指令
+     * @return 少了几条指令，没有折叠时为 0
+     */
+    public static int fold(InstructionBuffer code) {
+        int last = code.size() - 1;
+        if (last < 1 || code.getOperation(last - 1) != Operation.push) {
+            return 0;
+        }
+        var operation = code.getOperation(last);
+        long x = code.getOperand(last - 1);
+        if (isUnary(operation)) {
+            replace(code, last - 1, unary(operation, x));
+            return 1;
+        }
+        if (last < 2 || code.getOperation(last - 2) != Operation.push || !isBinary(operation)) {
+            return 0;
+        }
+        long lhs = code.getOperand(last - 2);
+        if (operation == Operation.divi && (x == 0 || (lhs == Long.MIN_VALUE && x == -1))) {
+            return 0;
+        }
+        replace(code, last - 2, binary(operation, lhs, x));
+        return 2;
+    }
+
+    private static void replace(InstructionBuffer code, int index, long value) {
+        code.truncate(index);
+        code.add(Operation.push, value);
+    }
+
+    private static boolean isUnary(Operation operation) {
+        switch (operation) {
+            case nop:
+            case negi:
+            case negf:
+            case itof:
+            case ftoi:
+            case not:
+            case setlt:
+            case setgt:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isBinary(Operation operation) {
+        switch (operation) {
+            case addi:
+            case subi:
+            case muli:
+            case divi:
+            case addf:
+            case subf:
+            case mulf:
+            case divf:
+            case cmpi:
+            case cmpf:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static long unary(Operation operation, long x) {
+        switch (operation) {
+            case nop:
+                return x;
+            case negi:
+                return -x;
+            case negf:
+                return bits(-real(x));
+            case itof:
+                return bits((double) x);
+            case ftoi:
+                return (long) real(x);
+            case not:
+                return x == 0 ? 1 : 0;
+            case setlt:
+                return x < 0 ? 1 : 0;
+            case setgt:
+                return x > 0 ? 1 : 0;
+            default:
+                throw new Error("not a unary operation: " + operation);
+        }
+    }
+
+    private static long binary(Operation operation, long lhs, long rhs) {
+        switch (operation) {
+            case addi:
+                return lhs + rhs;
+            case subi:
+                return lhs - rhs;
+            case muli:
+                return lhs * rhs;
+            case divi:
+                return lhs / rhs;
+            case addf:
+                return bits(real(lhs) + real(rhs));
+            case subf:
+                return bits(real(lhs) - real(rhs));
+            case mulf:
+                return bits(real(lhs) * real(rhs));
+            case divf:
+                return bits(real(lhs) / real(rhs));
+            case cmpi:
+                return Long.compare(lhs, rhs);
+            case cmpf: {
+                double l = real(lhs);
+                double r = real(rhs);
+                return l < r ? -1 : (l > r ? 1 : 0);
+            }
+            default:
+                throw new Error("not a binary operation: " + operation);
+        }
+    }
+
+    private static double real(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+}
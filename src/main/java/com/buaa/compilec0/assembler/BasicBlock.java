@@ -0,0 +1,128 @@
+package com.buaa.compilec0.assembler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基本块：中间没有跳转进来、也没有跳转出去的一段指令
+ * 块内的指令不含跳转，块最后的跳转单独存成 terminator，跳转目标是另一个块而不是偏移，
+ * 偏移在 ControlFlowGraph.linearize 时才算出来
+ * 1.terminator 为 null：执行完顺序走到 next，next 为 null 表示走出函数末尾
+ * 2.br：跳到 target
+ * 3.brtrue / brfalse：条件成立跳到 target，否则走到 next
+ * 4.ret / panic：没有后继
+ */
+public class BasicBlock {
+    private final int label;
+    private final InstructionBuffer instructions = new InstructionBuffer();
+    private Operation terminator;
+    private BasicBlock target;
+    private BasicBlock next;
+
+    BasicBlock(int label) {
+        this.label = label;
+    }
+
+    /**
+     * 块的编号，在一个 ControlFlowGraph 里唯一，toString 里写成 L编号
+     */
+    public int getLabel() {
+        return label;
+    }
+
+    public InstructionBuffer getInstructions() {
+        return instructions;
+    }
+
+    public Operation getTerminator() {
+        return terminator;
+    }
+
+    public BasicBlock getTarget() {
+        return target;
+    }
+
+    public BasicBlock getNext() {
+        return next;
+    }
+
+    /**
+     * 顺序执行到 next，不跳转
+     */
+    public void fallThrough(BasicBlock next) {
+        this.terminator = null;
+        this.target = null;
+        this.next = next;
+    }
+
+    /**
+     * 以跳转结束，br 没有 next
+     */
+    public void branch(Operation operation, BasicBlock target, BasicBlock next) {
+        if (!isBranch(operation)) {
+            throw new Error("not a branch: " + operation);
+        }
+        this.terminator = operation;
+        this.target = target;
+        this.next = operation == Operation.br ? null : next;
+    }
+
+    /**
+     * 以 ret 或 panic 结束
+     */
+    public void exit(Operation operation) {
+        if (operation != Operation.ret && operation != Operation.panic) {
+            throw new Error("not an exit: " + operation);
+        }
+        this.terminator = operation;
+        this.target = null;
+        this.next = null;
+    }
+
+    /**
+     * 执行完会不会走出函数末尾
+     */
+    public boolean fallsOffEnd() {
+        return next == null && (terminator == null || terminator == Operation.brtrue || terminator == Operation.brfalse);
+    }
+
+    /**
+     * 后继，条件跳转时跳转目标在前
+     */
+    public List<BasicBlock> successors() {
+        var successors = new ArrayList<BasicBlock>(2);
+        if (target != null) {
+            successors.add(target);
+        }
+        if (next != null && next != target) {
+            successors.add(next);
+        }
+        return successors;
+    }
+
+    static boolean isBranch(Operation operation) {
+        return operation == Operation.br || operation == Operation.brtrue || operation == Operation.brfalse;
+    }
+
+    static boolean isTerminator(Operation operation) {
+        return isBranch(operation) || operation == Operation.ret || operation == Operation.panic;
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder("L").append(label).append(':');
+        for (int i = 0; i < instructions.size(); i++) {
+            out.append("\n    ").append(instructions.toString(i));
+        }
+        if (terminator != null) {
+            out.append("\n    ").append(terminator);
+            if (target != null) {
+                out.append("(L").append(target.label).append(')');
+            }
+        }
+        if (next != null) {
+            out.append("\n    -> L").append(next.label);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package com.buaa.compilec0.assembler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个函数的控制流图，块之间用后继连起来，跳转目标是块（符号标号）而不是相对偏移
+ * of 从 Function 的指令序列切出基本块，linearize 按 blocks 的顺序排好，算出跳转的偏移，写回 Function
+ * 优化时在这上面增删块、改后继，不用管偏移
+ * 1.第一个块是入口
+ * 2.blocks 的顺序就是排布的顺序，后继不是下一个块时 linearize 补一条 br，是下一个块时省掉 br
+ * 3.跳出函数末尾（偏移指向最后一条指令之后）的跳转，目标是最后一个空块
+ */
+public class ControlFlowGraph {
+    private final Function function;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private int nextLabel = 0;
+
+    private ControlFlowGraph(Function function) {
+        this.function = function;
+    }
+
+    /**
+     * 从 function 现在的指令切出基本块
+     */
+    public static ControlFlowGraph of(Function function) {
+        var graph = new ControlFlowGraph(function);
+        var code = function.getInstructions();
+        int size = code.size();
+
+        // 跳转目标和跳转后面的一条指令是块的开头
+        var leader = new boolean[size + 1];
+        leader[0] = true;
+        boolean targetsEnd = false;
+        for (int i = 0; i < size; i++) {
+            var operation = code.getOperation(i);
+            if (BasicBlock.isTerminator(operation)) {
+                leader[i + 1] = true;
+            }
+            if (BasicBlock.isBranch(operation)) {
+                int target = target(code, i);
+                leader[target] = true;
+                targetsEnd |= target == size;
+            }
+        }
+
+        var blockAt = new BasicBlock[size + 1];
+        for (int i = 0; i < size; i++) {
+            if (leader[i]) {
+                blockAt[i] = graph.newBlock();
+            }
+        }
+        if (size == 0 || targetsEnd) {
+            blockAt[size] = graph.newBlock();
+        }
+
+        BasicBlock block = null;
+        for (int i = 0; i < size; i++) {
+            if (blockAt[i] != null) {
+                block = blockAt[i];
+            }
+            var operation = code.getOperation(i);
+            if (BasicBlock.isBranch(operation)) {
+                block.branch(operation, blockAt[target(code, i)], blockAt[i + 1]);
+            } else if (BasicBlock.isTerminator(operation)) {
+                block.exit(operation);
+            } else {
+                block.getInstructions().add(operation, code.getOperand(i));
+                if (leader[i + 1]) {
+                    block.fallThrough(blockAt[i + 1]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static int target(InstructionBuffer code, int index) {
+        long target = index + 1 + code.getOperand(index);
+        if (target < 0 || target > code.size()) {
+            throw new Error("branch at " + index + " jumps out of the function: " + code.toString(index));
+        }
+        return (int) target;
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    /**
+     * 所有的块，按排布的顺序，可以直接增删和调整顺序
+     */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * 新建一个空块，加在最后
+     */
+    public BasicBlock newBlock() {
+        var block = new BasicBlock(nextLabel++);
+        blocks.add(block);
+        return block;
+    }
+
+    /**
+     * 按 blocks 的顺序生成指令写回函数
+     * 先算出每个块的开始下标，再生成指令，跳转的偏移 = 目标块的开始下标 - 跳转的下标 - 1
+     * @return 写回后的指令条数
+     */
+    public int linearize() {
+        var start = new int[nextLabel];
+        int size = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            start[block.getLabel()] = size;
+            size += block.getInstructions().size() + terminatorSize(block, i);
+        }
+
+        var code = new InstructionBuffer(Math.max(16, size));
+        for (int i = 0; i < blocks.size(); i++) {
+            var block = blocks.get(i);
+            var instructions = block.getInstructions();
+            for (int k = 0; k < instructions.size(); k++) {
+                code.add(instructions.getOperation(k), instructions.getOperand(k));
+            }
+            var terminator = block.getTerminator();
+            if (terminator == Operation.ret || terminator == Operation.panic) {
+                code.add(terminator);
+                continue;
+            }
+            if (terminator != null && (terminator != Operation.br || block.getTarget() != layoutNext(i))) {
+                code.add(terminator, start[block.getTarget().getLabel()] - code.size() - 1);
+            }
+            if (terminator != Operation.br && block.getNext() != layoutNext(i)) {
+                code.add(Operation.br, start[block.getNext().getLabel()] - code.size() - 1);
+            }
+        }
+        function.setInstructions(code);
+        return size;
+    }
+
+    /**
+     * 块最后要生成几条跳转
+     */
+    private int terminatorSize(BasicBlock block, int index) {
+        var terminator = block.getTerminator();
+        if (terminator == Operation.ret || terminator == Operation.panic) {
+            return 1;
+        }
+        if (terminator == Operation.br) {
+            return block.getTarget() == layoutNext(index) ? 0 : 1;
+        }
+        int size = terminator == null ? 0 : 1;
+        if (block.getNext() != layoutNext(index)) {
+            if (block.getNext() == null) {
+                throw new Error("L" + block.getLabel() + " falls off the end of the function but is not the last block");
+            }
+            size++;
+        }
+        return size;
+    }
+
+    private BasicBlock layoutNext(int index) {
+        return index + 1 < blocks.size() ? blocks.get(index + 1) : null;
+    }
+
+    @Override
+    public String toString() {
+        var out = new StringBuilder();
+        for (var block : blocks) {
+            out.append(block).append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -2,8 +2,6 @@ package com.buaa.compilec0.assembler;
 
 import com.buaa.compilec0.symbol.DataType;
 
-import java.util.ArrayList;
-
 public class Function {
     private String functionName;
 
@@ -19,14 +17,14 @@ public class Function {
     private DataType returnType;                        //函数的返回类型
     private int paramSize;                              //函数的参数个数
     private int localVariableSize;                      //函数的局部变量的个数
-    private ArrayList<Instruction> instructions;
+    private InstructionBuffer instructions;             //函数的指令
 
     public Function(long globalOffset) {
         this.globalOffset = globalOffset;
         this.returnType = DataType.VOID;
         this.paramSize = 0;
         this.localVariableSize = 0;
-        this.instructions = new ArrayList<>();
+        this.instructions = new InstructionBuffer();
     }
 
     public Function(long globalOffset, DataType returnType, int paramSize, int localVariableSize) {
@@ -34,7 +32,7 @@ public class Function {
         this.returnType = returnType;
         this.paramSize = paramSize;
         this.localVariableSize = localVariableSize;
-        this.instructions = new ArrayList<>();
+        this.instructions = new InstructionBuffer();
     }
 
     public long getGlobalOffset() {
@@ -69,20 +67,29 @@ public class Function {
         this.localVariableSize = localVariableSize;
     }
 
-    public ArrayList<Instruction> getInstructions() {
+    public InstructionBuffer getInstructions() {
         return instructions;
     }
 
-    public void setInstructions(ArrayList<Instruction> instructions) {
+    public void setInstructions(InstructionBuffer instructions) {
         this.instructions = instructions;
     }
 
+    /**
+     * 增加一条没有操作数的指令
+     * @param opt  操作符
+     */
+    public void addInstruction(Operation opt) {
+        instructions.add(opt);
+    }
+
     /**
      * 增加一条新的指令
-     * @param instruction  指令
+     * @param opt  操作符
+     * @param x  操作数
      */
-    public void addInstruction(Instruction instruction) {
-        instructions.add(instruction);
+    public void addInstruction(Operation opt, long x) {
+        instructions.add(opt, x);
     }
 
     @Override
@@ -93,9 +100,8 @@ public class Function {
         }
         StringBuilder instructionsString = new StringBuilder();
         for (int i = 0; i < instructions.size(); i++) {
-            Instruction instruction = instructions.get(i);
             StringBuilder ins = new StringBuilder();
-            ins.append("\n    " + i + ": " + instruction.toString());
+            ins.append("\n    " + i + ": " + instructions.toString(i));
             instructionsString.append(ins.toString());
         }
         return "fn [" + globalOffset + "] " + localVariableSize + " " + paramSize + " -> " + retSlot + " {"
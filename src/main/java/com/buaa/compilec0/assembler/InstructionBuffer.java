@@ -0,0 +1,109 @@
+package com.buaa.compilec0.assembler;
+
+import java.util.Arrays;
+
+/**
+ * 一个函数的指令序列
+ * 操作符存成 byte（Operation 的序号），操作数存成 long，
+ * 添加指令不产生对象，数组按两倍扩容
+ * 指令的下标就是它在函数中的顺序
+ */
+public class InstructionBuffer {
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private byte[] operations;
+    private long[] operands;
+    private int size = 0;
+
+    public InstructionBuffer() {
+        this(16);
+    }
+
+    public InstructionBuffer(int capacity) {
+        this.operations = new byte[capacity];
+        this.operands = new long[capacity];
+    }
+
+    /**
+     * 添加一条没有操作数的指令
+     * @return 指令的下标
+     */
+    public int add(Operation opt) {
+        return add(opt, 0);
+    }
+
+    /**
+     * 添加一条指令
+     * @return 指令的下标
+     */
+    public int add(Operation opt, long x) {
+        if (size == operations.length) {
+            int capacity = Math.max(16, size * 2);
+            operations = Arrays.copyOf(operations, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+        }
+        operations[size] = (byte) opt.ordinal();
+        operands[size] = x;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Operation getOperation(int index) {
+        return OPERATIONS[operations[index]];
+    }
+
+    /**
+     * 操作符的序号，和 Operation.ordinal() 相同
+     */
+    public int getOpcode(int index) {
+        return operations[index];
+    }
+
+    public long getOperand(int index) {
+        return operands[index];
+    }
+
+    /**
+     * 回填操作数，比如跳转的偏移
+     */
+    public void setOperand(int index, long x) {
+        operands[index] = x;
+    }
+
+    /**
+     * 只保留前 size 条指令，比如常量折叠时去掉已经算出结果的指令
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("truncate to " + size + " of " + this.size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * 第一条操作符为 opt 的指令的下标，没有返回 -1
+     */
+    public int indexOf(Operation opt) {
+        byte code = (byte) opt.ordinal();
+        for (int i = 0; i < size; i++) {
+            if (operations[i] == code) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 第 index 条指令的文本形式，比如 Push(1)
+     */
+    public String toString(int index) {
+        var opt = getOperation(index);
+        if (opt.hasOperand()) {
+            return opt.toString() + "(" + operands[index] + ")";
+        }
+        return opt.toString();
+    }
+}
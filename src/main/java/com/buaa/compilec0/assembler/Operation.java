@@ -1,65 +1,88 @@
 package com.buaa.compilec0.assembler;
 
 public enum Operation {
-    nop,
-    push,
-    pop,
-    popn,
-    dup,
-    loca,
-    arga,
-    globa,
-    load8,
-    load16,
-    load32,
-    load64,
-    store8,
-    store16,
-    store32,
-    store64,
-    alloc,
-    free,
-    stackalloc,
-    addi,
-    subi,
-    muli,
-    divi,
-    addf,
-    subf,
-    mulf,
-    divf,
-    divu,
-    shl,
-    shr,
-    and,
-    or,
-    xor,
-    not,
-    cmpi,
-    cmpu,
-    cmpf,
-    negi,
-    negf,
-    itof,
-    ftoi,
-    shrl,
-    setlt,
-    setgt,
-    br,
-    brfalse,
-    brtrue,
-    call,
-    ret,
-    callname,
-    scani,
-    scanc,
-    scanf,
-    printi,
-    printc,
-    printf,
-    prints,
-    println,
-    panic;
+    nop(0x00, 0),
+    push(0x01, 8),
+    pop(0x02, 0),
+    popn(0x03, 4),
+    dup(0x04, 0),
+    loca(0x0a, 4),
+    arga(0x0b, 4),
+    globa(0x0c, 4),
+    load8(0x10, 0),
+    load16(0x11, 0),
+    load32(0x12, 0),
+    load64(0x13, 0),
+    store8(0x14, 0),
+    store16(0x15, 0),
+    store32(0x16, 0),
+    store64(0x17, 0),
+    alloc(0x18, 0),
+    free(0x19, 0),
+    stackalloc(0x1a, 4),
+    addi(0x20, 0),
+    subi(0x21, 0),
+    muli(0x22, 0),
+    divi(0x23, 0),
+    addf(0x24, 0),
+    subf(0x25, 0),
+    mulf(0x26, 0),
+    divf(0x27, 0),
+    divu(0x28, 0),
+    shl(0x29, 0),
+    shr(0x2a, 0),
+    and(0x2b, 0),
+    or(0x2c, 0),
+    xor(0x2d, 0),
+    not(0x2e, 0),
+    cmpi(0x30, 0),
+    cmpu(0x31, 0),
+    cmpf(0x32, 0),
+    negi(0x34, 0),
+    negf(0x35, 0),
+    itof(0x36, 0),
+    ftoi(0x37, 0),
+    shrl(0x38, 0),
+    setlt(0x39, 0),
+    setgt(0x3a, 0),
+    br(0x41, 4),
+    brfalse(0x42, 4),
+    brtrue(0x43, 4),
+    call(0x48, 4),
+    ret(0x49, 0),
+    callname(0x4a, 4),
+    scani(0x50, 0),
+    scanc(0x51, 0),
+    scanf(0x52, 0),
+    printi(0x54, 0),
+    printc(0x55, 0),
+    printf(0x56, 0),
+    prints(0x57, 0),
+    println(0x58, 0),
+    panic(0xfe, 0);
+
+    private final byte code;            //o0 中的操作码
+    private final int operandSize;      //操作数的字节数，没有操作数为 0
+
+    Operation(int code, int operandSize) {
+        this.code = (byte) code;
+        this.operandSize = operandSize;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public int getOperandSize() {
+        return operandSize;
+    }
+
+    /**
+     * 是否带有操作数
+     */
+    public boolean hasOperand() {
+        return operandSize > 0;
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,147 @@
+package com.buaa.compilec0.driver;
+
+import com.buaa.compilec0.error.CompileError;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 在一个进程里编译多个文件，文件之间在 ForkJoinPool 上并行
+ * 每个文件有自己的 CharSource、Lexer、Analyser、Assembler 和 BinaryCode，
+ * 编译器里没有可变的静态状态（静态的只有类初始化时填好的查找表），所以文件之间不需要同步
+ * 每个文件的错误只记在它自己的结果里，不影响其它文件
+ */
+public class BatchCompiler {
+    private final int parallelism;
+    private final CompileCache cache;
+    private final CompileOptions options;
+    private final PhaseTimes times;
+
+    /**
+     * 并行度为 CPU 核数
+     */
+    public BatchCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism 最多同时编译的文件数，1 为在当前线程依次编译
+     */
+    public BatchCompiler(int parallelism) {
+        this(parallelism, null);
+    }
+
+    /**
+     * @param cache 编译缓存，为 null 时不用缓存
+     */
+    public BatchCompiler(int parallelism, CompileCache cache) {
+        this(parallelism, cache, CompileOptions.DEFAULT, PhaseTimes.NONE);
+    }
+
+    /**
+     * @param options 所有文件共用的编译选项
+     * @param times 所有文件各阶段的耗时累加到这里
+     */
+    public BatchCompiler(int parallelism, CompileCache cache, CompileOptions options, PhaseTimes times) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.cache = cache;
+        this.options = options;
+        this.times = times;
+    }
+
+    /**
+     * @return 和 jobs 顺序相同的结果
+     */
+    public List<CompileResult> compile(List<CompileJob> jobs) {
+        var results = new CompileResult[jobs.size()];
+        if (parallelism == 1 || jobs.size() <= 1) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = compile(jobs.get(i));
+            }
+        } else {
+            var pool = new ForkJoinPool(Math.min(parallelism, jobs.size()));
+            try {
+                pool.invoke(new CompileTask(jobs, results, 0, results.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public CompileResult compile(CompileJob job) {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            Compiler.compileFile(job.getInput(), job.getOutput(), options, cache, times);
+        } catch (CompileError | IOException | RuntimeException e) {
+            error = e;
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            // 编译器内部的错误也只算这个文件失败
+            error = e;
+        }
+        return new CompileResult(job, System.nanoTime() - start, error);
+    }
+
+    /**
+     * 打印每个文件的结果和耗时，最后一行是汇总
+     * @param wallNanos 整批的墙钟时间，并行时比各文件耗时之和小
+     */
+    public static void printSummary(List<CompileResult> results, long wallNanos, PrintStream out) {
+        long total = 0;
+        int failed = 0;
+        for (CompileResult result : results) {
+            total += result.getNanos();
+            if (result.isSuccess()) {
+                out.printf("ok    %10.3f ms  %s%n", millis(result.getNanos()), result.getJob());
+            } else {
+                failed++;
+                out.printf("FAIL  %10.3f ms  %s: %s%n", millis(result.getNanos()), result.getJob().getInput(), result.getError());
+            }
+        }
+        out.printf("%d files, %d ok, %d failed, %.3f ms compiling, %.3f ms wall%n",
+                results.size(), results.size() - failed, failed, millis(total), millis(wallNanos));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * 把 [from, to) 的任务对半分开，空闲的线程会偷走另一半
+     */
+    private class CompileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<CompileJob> jobs;
+        private final CompileResult[] results;
+        private final int from;
+        private final int to;
+
+        CompileTask(List<CompileJob> jobs, CompileResult[] results, int from, int to) {
+            this.jobs = jobs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = compile(jobs.get(from));
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CompileTask(jobs, results, from, middle), new CompileTask(jobs, results, middle, to));
+        }
+    }
+}
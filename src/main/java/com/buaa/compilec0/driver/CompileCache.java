@@ -0,0 +1,366 @@
+package com.buaa.compilec0.driver;
+
+import com.buaa.compilec0.driver.PhaseTimes.Phase;
+import com.buaa.compilec0.error.CompileError;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 按内容寻址的磁盘编译缓存，命中时跳过词法分析和语法分析，直接用存下来的 o0
+ * 1.键是 SHA-256(编译器指纹, 选项, 源文件字节)，编译器指纹由版本号和 jar（或 class 目录）的大小、修改时间组成，
+ *   重新构建编译器后旧的条目自然失效；找不到编译器所在的 jar 时没有可靠的指纹，缓存不启用，每次都直接编译
+ * 2.条目放在 目录/键的前两位/键.o0，先写到同目录的临时文件再原子地改名，多个进程同时写同一个键也是安全的
+ * 3.按修改时间做 LRU：命中时更新修改时间，总大小超过上限时删掉最旧的条目，直到不超过上限的 90%
+ * 命中、未命中、写入和淘汰的次数只在本进程内统计
+ */
+public class CompileCache {
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private static final String SUFFIX = ".o0";
+    private static final byte[] MAGIC = {0x72, 0x30, 0x3b, 0x3e};
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String FINGERPRINT = fingerprint(locate(codeSource()));
+
+    private final Path directory;
+    private final long maxBytes;
+    // 为 null 时缓存不启用
+    private final String fingerprint;
+
+    // 缓存目录的总大小，第一次写入时扫描一遍，之后按本进程的写入累加
+    private long totalBytes = -1;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CompileCache(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    public CompileCache(Path directory, long maxBytes) {
+        this(directory, maxBytes, FINGERPRINT);
+    }
+
+    /**
+     * @param fingerprint 编译器指纹，为 null 时缓存不启用
+     */
+    CompileCache(Path directory, long maxBytes, String fingerprint) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("cache size must be positive: " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 找不到编译器的指纹时为 false，这时 compile 不读也不写缓存
+     */
+    public boolean isEnabled() {
+        return fingerprint != null;
+    }
+
+    /**
+     * 命中时返回缓存的 o0，否则编译并存入缓存
+     * 缓存目录读写出错时只是不用缓存，不影响编译
+     * @param options 编译选项，不同的选项对应不同的条目；只能是 o0 输出
+     */
+    public byte[] compile(byte[] source, CompileOptions options) throws CompileError {
+        return compile(source, options, PhaseTimes.NONE);
+    }
+
+    /**
+     * 查缓存和写缓存的时间记在 cache 阶段上
+     */
+    public byte[] compile(byte[] source, CompileOptions options, PhaseTimes times) throws CompileError {
+        if (!options.isCacheable()) {
+            throw new IllegalArgumentException("only o0 output can be cached: " + options);
+        }
+        if (!isEnabled()) {
+            return Compiler.compile(source, options, times);
+        }
+        long start = System.nanoTime();
+        var key = key(source, options.toString());
+        var code = get(key);
+        times.stop(Phase.CACHE, start);
+        if (code != null) {
+            return code;
+        }
+        code = Compiler.compile(source, options, times);
+        start = System.nanoTime();
+        put(key, code);
+        times.stop(Phase.CACHE, start);
+        return code;
+    }
+
+    /**
+     * @return 命中时为 o0 的内容，否则为 null
+     */
+    public byte[] get(String key) {
+        var path = entry(key);
+        try {
+            var code = Files.readAllBytes(path);
+            if (!isValid(code)) {
+                // 损坏的条目（比如被截断）当作未命中，并删掉
+                Files.deleteIfExists(path);
+                misses.incrementAndGet();
+                return null;
+            }
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // 读完之后条目被其它进程淘汰了，只是没更新到淘汰用的时间，读到的内容照样能用
+            }
+            hits.incrementAndGet();
+            return code;
+        } catch (IOException e) {
+            // 没有这个条目，或者刚被其它进程淘汰
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(String key, byte[] code) {
+        var path = entry(key);
+        try {
+            Files.createDirectories(path.getParent());
+            // 覆盖已有的条目时，总大小里要减掉旧条目
+            long replaced;
+            try {
+                replaced = Files.size(path);
+            } catch (NoSuchFileException e) {
+                replaced = 0;
+            }
+            var temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, code);
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            stores.incrementAndGet();
+            added(code.length - replaced);
+        } catch (IOException | UncheckedIOException e) {
+            // 写不进缓存不影响这次编译
+        }
+    }
+
+    /**
+     * 缓存的键：SHA-256(编译器指纹, 选项, 源文件) 的十六进制
+     */
+    public String key(byte[] source, String options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error("SHA-256 is not available", e);
+        }
+        digest.update(String.valueOf(fingerprint).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(source);
+        var hash = digest.digest();
+        var hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getStores() {
+        return stores.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled()) {
+            return String.format("cache %s: disabled, cannot locate the compiler to fingerprint it", directory);
+        }
+        return String.format("cache %s: %d hits, %d misses, %d stores, %d evictions",
+                directory, getHits(), getMisses(), getStores(), getEvictions());
+    }
+
+    private Path entry(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private static boolean isValid(byte[] code) {
+        if (code.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (code[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void added(long bytes) throws IOException {
+        if (totalBytes < 0) {
+            totalBytes = 0;
+            for (Entry entry : entries()) {
+                totalBytes += entry.size;
+            }
+        } else {
+            totalBytes += bytes;
+        }
+        if (totalBytes > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * 从最久没有用过的条目开始删，直到不超过上限的 90%
+     * 重新扫描目录，这样其它进程写入的条目也算在内
+     */
+    private void evict() throws IOException {
+        var entries = entries();
+        entries.sort(Comparator.comparing((Entry entry) -> entry.lastModified));
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.size;
+        }
+        long target = maxBytes / 10 * 9;
+        for (Entry entry : entries) {
+            if (total <= target) {
+                break;
+            }
+            if (Files.deleteIfExists(entry.path)) {
+                evictions.incrementAndGet();
+            }
+            total -= entry.size;
+        }
+        totalBytes = total;
+    }
+
+    private List<Entry> entries() throws IOException {
+        var entries = new ArrayList<Entry>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.toString().endsWith(SUFFIX)) {
+                    continue;
+                }
+                try {
+                    var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    entries.add(new Entry(path, attributes.size(), attributes.lastModifiedTime()));
+                } catch (NoSuchFileException e) {
+                    // 被其它进程删掉了
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static URL codeSource() {
+        var codeSource = CompileCache.class.getProtectionDomain().getCodeSource();
+        return codeSource == null ? null : codeSource.getLocation();
+    }
+
+    /**
+     * 编译器所在的 jar 或 class 目录
+     * Spring Boot 的 fat jar 里类的位置是 jar:file:/x/compilec0.jar!/BOOT-INF/classes!/，取最外层的 jar
+     * @return 找不到时为 null
+     */
+    static Path locate(URL location) {
+        if (location == null) {
+            return null;
+        }
+        var spec = location.toString();
+        if (spec.startsWith("jar:")) {
+            spec = spec.substring("jar:".length());
+            int separator = spec.indexOf("!/");
+            if (separator >= 0) {
+                spec = spec.substring(0, separator);
+            }
+        }
+        try {
+            var path = Path.of(new URI(spec));
+            return Files.exists(path) ? path : null;
+        } catch (URISyntaxException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 编译器的指纹：版本号，加上编译器所在的 jar（或 class 目录下所有文件）的大小和修改时间
+     * 命中时这是除了读条目以外唯一的开销，所以不用 lambda 和 stream，免得启动时多加载上百个类
+     * @return location 为 null 或者读不了时为 null，只有版本号不能区分两次构建
+     */
+    static String fingerprint(Path location) {
+        if (location == null) {
+            return null;
+        }
+        var builder = new StringBuilder();
+        builder.append(CompileCache.class.getPackage().getImplementationVersion());
+        try {
+            Files.walkFileTree(location, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    builder.append('|').append(location.relativize(file))
+                            .append(':').append(attributes.size())
+                            .append(':').append(attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return builder.toString();
+    }
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        final FileTime lastModified;
+
+        Entry(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.buaa.compilec0.driver;
+
+import com.buaa.compilec0.error.CompileError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻的编译守护进程，只监听本机回环地址，协议见 DaemonProtocol
+ * 启动时生成令牌写进令牌文件，只接受发来同一个令牌的连接，退出时删掉令牌文件
+ * 每个连接一个线程，不同连接上的请求同时处理；JIT 预热之后单个文件的编译只要几毫秒
+ * 记录成功和失败的请求数、吞吐量和延迟直方图，可以用 STATS 请求查看，退出时也会打印
+ */
+public class CompileDaemon implements Closeable {
+    private final ServerSocket server;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "compilec0-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 还开着的客户端连接，close 时要让它们停下来
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final CompileOptions options;
+    private final Path tokenFile;
+    private final byte[] token;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failed = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running = true;
+
+    /**
+     * @param port 0 为任意空闲端口
+     */
+    public CompileDaemon(int port) throws IOException {
+        this(port, CompileOptions.DEFAULT);
+    }
+
+    /**
+     * @param options 所有请求共用的编译选项
+     */
+    public CompileDaemon(int port, CompileOptions options) throws IOException {
+        this(port, options, DaemonProtocol.defaultTokenDirectory());
+    }
+
+    /**
+     * @param tokenDirectory 令牌文件所在的目录
+     */
+    public CompileDaemon(int port, CompileOptions options, Path tokenDirectory) throws IOException {
+        this.options = options;
+        server = new ServerSocket(port, 64, InetAddress.getLoopbackAddress());
+        tokenFile = DaemonProtocol.tokenFile(tokenDirectory, server.getLocalPort());
+        try {
+            token = DaemonProtocol.createToken(tokenFile);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     * 接受连接，直到收到 SHUTDOWN 或者 close
+     */
+    public void serve() throws IOException {
+        try {
+            while (running) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException e) {
+                    if (!running) {
+                        break;
+                    }
+                    throw e;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 不再接受新连接，删掉令牌文件，并关掉已有连接的输入端：空闲的连接在读下一个请求时立刻读到结尾，
+     * 正在编译的请求照常写回结果，所以不用等空闲的客户端自己断开
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        Files.deleteIfExists(tokenFile);
+        for (var socket : clients) {
+            try {
+                socket.shutdownInput();
+            } catch (IOException e) {
+                // 连接已经断开了
+            }
+        }
+        connections.shutdown();
+        try {
+            connections.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public String stats() {
+        long requests = latency.count();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        var out = new StringBuilder();
+        out.append(String.format("requests %d, failed %d, uptime %.1f s, %.1f requests/s%n",
+                requests, failed.get(), seconds, requests / seconds));
+        latency.appendTo(out);
+        return out.toString();
+    }
+
+    private void handle(Socket socket) {
+        clients.add(socket);
+        try (socket;
+             var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            // 先登记再检查，close 要么看得到这个连接，要么这里看得到 running 已经是 false
+            if (!running || !authenticate(in, out)) {
+                return;
+            }
+            int kind;
+            while ((kind = DaemonProtocol.readKind(in)) >= 0) {
+                var payload = DaemonProtocol.readPayload(in);
+                switch (kind) {
+                    case DaemonProtocol.COMPILE_SOURCE:
+                    case DaemonProtocol.COMPILE_PATH:
+                        compile((byte) kind, payload, out);
+                        break;
+                    case DaemonProtocol.STATS:
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.OK, stats().getBytes(StandardCharsets.UTF_8));
+                        break;
+                    case DaemonProtocol.SHUTDOWN:
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.OK, stats().getBytes(StandardCharsets.UTF_8));
+                        running = false;
+                        server.close();
+                        return;
+                    default:
+                        DaemonProtocol.writeFrame(out, DaemonProtocol.FAILED,
+                                ("unknown request: " + kind).getBytes(StandardCharsets.UTF_8));
+                        return;
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开，或者发来的帧不完整，只影响这个连接
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    /**
+     * 第一帧必须是带着正确令牌的 AUTH；认证之前只收令牌那么长的内容，免得没认证的连接让守护进程分配大块内存
+     */
+    private boolean authenticate(DataInputStream in, DataOutputStream out) throws IOException {
+        int kind = DaemonProtocol.readKind(in);
+        if (kind < 0) {
+            return false;
+        }
+        if (kind == DaemonProtocol.AUTH
+                && MessageDigest.isEqual(DaemonProtocol.readPayload(in, DaemonProtocol.TOKEN_LENGTH), token)) {
+            DaemonProtocol.writeFrame(out, DaemonProtocol.OK, new byte[0]);
+            return true;
+        }
+        DaemonProtocol.writeFrame(out, DaemonProtocol.FAILED, "not authorized".getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    private void compile(byte kind, byte[] payload, DataOutputStream out) throws IOException {
+        long start = System.nanoTime();
+        byte status;
+        byte[] response;
+        try {
+            if (kind == DaemonProtocol.COMPILE_SOURCE) {
+                response = Compiler.compile(payload, options, PhaseTimes.NONE);
+            } else {
+                response = Compiler.compile(Files.readAllBytes(Path.of(new String(payload, StandardCharsets.UTF_8))),
+                        options, PhaseTimes.NONE);
+            }
+            status = DaemonProtocol.OK;
+        } catch (CompileError e) {
+            status = DaemonProtocol.COMPILE_ERROR;
+            response = e.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            status = DaemonProtocol.FAILED;
+            response = e.toString().getBytes(StandardCharsets.UTF_8);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            // 编译器内部的错误只算这个请求失败
+            status = DaemonProtocol.FAILED;
+            response = e.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        latency.record(System.nanoTime() - start);
+        if (status != DaemonProtocol.OK) {
+            failed.incrementAndGet();
+        }
+        DaemonProtocol.writeFrame(out, status, response);
+    }
+}
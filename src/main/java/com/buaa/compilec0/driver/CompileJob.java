@@ -0,0 +1,78 @@
+package com.buaa.compilec0.driver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 一个编译任务：一个 c0 输入文件和它的 o0 输出文件
+ */
+public class CompileJob {
+    private static final String SOURCE_SUFFIX = ".c0";
+    private static final String OUTPUT_SUFFIX = ".o0";
+
+    private final Path input;
+    private final Path output;
+
+    public CompileJob(Path input, Path output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    public Path getInput() {
+        return input;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    /**
+     * 目录下（含子目录）所有的 .c0 文件，按路径排序
+     * 输出放在 outputDirectory 中相同的相对位置，扩展名换成 .o0
+     */
+    public static List<CompileJob> fromDirectory(Path directory, Path outputDirectory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            return files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(SOURCE_SUFFIX))
+                    .sorted()
+                    .map(input -> new CompileJob(input, outputFor(directory.relativize(input), outputDirectory)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 清单文件每行一对 "输入 输出"，用空白隔开；空行和 # 开头的行跳过
+     * 相对路径相对于当前目录
+     */
+    public static List<CompileJob> fromManifest(Path manifest) throws IOException {
+        var jobs = new ArrayList<CompileJob>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var fields = line.split("\\s+");
+            if (fields.length != 2) {
+                throw new IOException(manifest + ":" + lineNumber + ": expected \"input output\"");
+            }
+            jobs.add(new CompileJob(Path.of(fields[0]), Path.of(fields[1])));
+        }
+        return jobs;
+    }
+
+    private static Path outputFor(Path relativeInput, Path outputDirectory) {
+        var name = relativeInput.toString();
+        return outputDirectory.resolve(name.substring(0, name.length() - SOURCE_SUFFIX.length()) + OUTPUT_SUFFIX);
+    }
+
+    @Override
+    public String toString() {
+        return input + " -> " + output;
+    }
+}
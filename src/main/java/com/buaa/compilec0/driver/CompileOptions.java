@@ -0,0 +1,79 @@
+package com.buaa.compilec0.driver;
+
+/**
+ * 影响编译输出的选项，不可变，可以在多个线程之间共用
+ * 1.optimizationLevel 优化级别 0 到 2，对应命令行的 -O0 / -O1 / -O2
+ * 2.emit 输出 o0 二进制，还是可读的汇编文本
+ * toString() 是选项的规范写法，编译缓存用它区分不同选项下的条目
+ */
+public final class CompileOptions {
+    public static final int MAX_OPTIMIZATION_LEVEL = 2;
+
+    /**
+     * -O0 --emit=o0，和没有这些选项时的输出相同
+     */
+    public static final CompileOptions DEFAULT = new CompileOptions(0, Emit.O0);
+
+    private final int optimizationLevel;
+    private final Emit emit;
+
+    public CompileOptions(int optimizationLevel, Emit emit) {
+        if (optimizationLevel < 0 || optimizationLevel > MAX_OPTIMIZATION_LEVEL) {
+            throw new IllegalArgumentException("bad optimization level: " + optimizationLevel);
+        }
+        this.optimizationLevel = optimizationLevel;
+        this.emit = emit;
+    }
+
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public Emit getEmit() {
+        return emit;
+    }
+
+    /**
+     * 只有 o0 输出进编译缓存，缓存按 o0 的魔数检查条目是否完整
+     */
+    public boolean isCacheable() {
+        return emit == Emit.O0;
+    }
+
+    @Override
+    public String toString() {
+        return "-O" + optimizationLevel + " --emit=" + emit;
+    }
+
+    /**
+     * 输出格式
+     * 1.O0 虚拟机执行的 o0 二进制
+     * 2.TEXT 每个全局变量和函数的文本形式，和 Assembler.toString() 相同
+     */
+    public enum Emit {
+        O0("o0"), TEXT("text");
+
+        private final String name;
+
+        Emit(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return 命令行上的写法对应的格式，不认识时为 null
+         */
+        public static Emit of(String name) {
+            for (Emit emit : values()) {
+                if (emit.name.equals(name)) {
+                    return emit;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.buaa.compilec0.driver;
+
+/**
+ * 一个编译任务的结果：耗时，以及失败时的原因
+ */
+public class CompileResult {
+    private final CompileJob job;
+    private final long nanos;
+    private final Throwable error;
+
+    public CompileResult(CompileJob job, long nanos, Throwable error) {
+        this.job = job;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    public CompileJob getJob() {
+        return job;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return 失败的原因，成功时为 null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.buaa.compilec0.driver;
+
+import com.buaa.compilec0.analyser.Analyser;
+import com.buaa.compilec0.driver.PhaseTimes.Phase;
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.assembler.BinaryCode;
+import com.buaa.compilec0.assembler.ControlFlowGraph;
+import com.buaa.compilec0.assembler.Function;
+import com.buaa.compilec0.error.CompileError;
+import com.buaa.compilec0.optimizer.DeadCodeEliminator;
+import com.buaa.compilec0.optimizer.PeepholeOptimizer;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.tokenizer.CharSource;
+import com.buaa.compilec0.tokenizer.Lexer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 词法分析、语法分析、编码成 o0 的整条流水线
+ * 每次调用都用新的对象，可以在多个线程里同时调用
+ * 不带 CompileOptions 的方法都按 CompileOptions.DEFAULT 编译
+ */
+public final class Compiler {
+
+    private Compiler() {
+    }
+
+    /**
+     * 编译一个文件，把 o0 写到 output，需要时创建 output 所在的目录
+     */
+    public static void compileFile(Path input, Path output) throws CompileError, IOException {
+        compileFile(input, output, CompileOptions.DEFAULT, null, PhaseTimes.NONE);
+    }
+
+    /**
+     * 有缓存时先查缓存，没有命中再编译
+     */
+    public static void compileFile(Path input, Path output, CompileCache cache) throws CompileError, IOException {
+        compileFile(input, output, CompileOptions.DEFAULT, cache, PhaseTimes.NONE);
+    }
+
+    /**
+     * 按选项编译一个文件，需要时创建 output 所在的目录
+     * 不用缓存时边读文件边做词法分析，用缓存时先把整个文件读进来算键
+     * @param cache 编译缓存，为 null 时不用缓存
+     */
+    public static void compileFile(Path input, Path output, CompileOptions options, CompileCache cache, PhaseTimes times)
+            throws CompileError, IOException {
+        byte[] code;
+        if (cache == null || !options.isCacheable()) {
+            try (var source = ChannelCharSource.open(input)) {
+                code = compile(source, options, times);
+            }
+        } else {
+            long start = System.nanoTime();
+            var source = Files.readAllBytes(input);
+            times.stop(Phase.READ, start);
+            code = cache.compile(source, options, times);
+        }
+        long start = System.nanoTime();
+        createParent(output);
+        Files.write(output, code);
+        times.stop(Phase.WRITE, start);
+    }
+
+    /**
+     * 把 o0 写到通道里，比如标准输出或者管道，不经过临时文件
+     */
+    public static void write(byte[] code, WritableByteChannel channel) throws IOException {
+        var buffer = ByteBuffer.wrap(code);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void createParent(Path output) throws IOException {
+        var parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * 编译内存中的源文件（按默认字符集解码，和读文件时一样）
+     * @return o0 文件的内容
+     */
+    public static byte[] compile(byte[] source) throws CompileError {
+        return compile(source, CompileOptions.DEFAULT, PhaseTimes.NONE);
+    }
+
+    public static byte[] compile(byte[] source, CompileOptions options, PhaseTimes times) throws CompileError {
+        return compile(new ChannelCharSource(Channels.newChannel(new ByteArrayInputStream(source))), options, times);
+    }
+
+    /**
+     * 有缓存并且选项允许时先查缓存
+     * @param cache 编译缓存，为 null 时不用缓存
+     */
+    public static byte[] compile(byte[] source, CompileOptions options, CompileCache cache, PhaseTimes times)
+            throws CompileError {
+        if (cache == null || !options.isCacheable()) {
+            return compile(source, options, times);
+        }
+        return cache.compile(source, options, times);
+    }
+
+    /**
+     * 编译一个文件
+     * @return o0 文件的内容
+     */
+    public static byte[] compile(Path input) throws CompileError, IOException {
+        try (var source = ChannelCharSource.open(input)) {
+            return compile(source);
+        }
+    }
+
+    public static byte[] compile(CharSource source) throws CompileError {
+        return compile(source, CompileOptions.DEFAULT, PhaseTimes.NONE);
+    }
+
+    /**
+     * @return 按 options 的输出格式编码好的内容
+     */
+    public static byte[] compile(CharSource source, CompileOptions options, PhaseTimes times) throws CompileError {
+        var assembler = assemble(source, options, times);
+
+        long start = System.nanoTime();
+        byte[] code;
+        if (options.getEmit() == CompileOptions.Emit.TEXT) {
+            code = assembler.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            code = new BinaryCode(assembler).toByteArray();
+        }
+        times.stop(Phase.ENCODE, start);
+        return code;
+    }
+
+    /**
+     * 分析并按 options 的优化级别优化，不编码
+     * -O1 起在分析时折叠常量；分析完每个函数先做窥孔优化，再切成基本块删掉死代码，补上缺的 ret，最后排回指令序列
+     */
+    public static Assembler assemble(CharSource source, CompileOptions options, PhaseTimes times) throws CompileError {
+        long start = System.nanoTime();
+        var assembler = new Analyser(Lexer.create(source), options.getOptimizationLevel() >= 1).analyse();
+        times.stop(Phase.ANALYSE, start);
+
+        if (options.getOptimizationLevel() >= 1) {
+            start = System.nanoTime();
+            optimize(assembler.startFunction, false);
+            for (Function function : assembler.functions) {
+                optimize(function, true);
+            }
+            times.stop(Phase.OPTIMISE, start);
+        }
+        return assembler;
+    }
+
+    /**
+     * @param terminate 走出末尾的路径是否补上 ret，_start 要走出末尾才能结束程序
+     */
+    private static void optimize(Function function, boolean terminate) {
+        PeepholeOptimizer.optimize(function);
+        var graph = ControlFlowGraph.of(function);
+        DeadCodeEliminator.eliminate(graph);
+        if (terminate) {
+            DeadCodeEliminator.terminate(graph);
+        }
+        graph.linearize();
+    }
+}
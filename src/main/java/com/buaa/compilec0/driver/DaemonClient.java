@@ -0,0 +1,130 @@
+package com.buaa.compilec0.driver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * 编译守护进程的客户端，一个对象对应一个连接，可以依次发多个请求
+ * 连上之后先从令牌文件读出令牌认证，读不到令牌或者被拒绝时构造就失败
+ * 也是 scripts/compilec0-client 的入口：只加载这几个类，不加载编译器本身
+ */
+public class DaemonClient implements Closeable {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public DaemonClient(int port) throws IOException {
+        this(port, DaemonProtocol.defaultTokenDirectory());
+    }
+
+    /**
+     * @param tokenDirectory 守护进程写令牌文件的目录
+     */
+    public DaemonClient(int port, Path tokenDirectory) throws IOException {
+        var tokenFile = DaemonProtocol.tokenFile(tokenDirectory, port);
+        byte[] token;
+        try {
+            token = Files.readAllBytes(tokenFile);
+        } catch (NoSuchFileException e) {
+            throw new IOException("no token file " + tokenFile + ", the daemon is not running or belongs to another user");
+        }
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (request(DaemonProtocol.AUTH, token).getKind() != DaemonProtocol.OK) {
+                throw new IOException("compile daemon rejected the token");
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public DaemonProtocol.Frame compileSource(byte[] source) throws IOException {
+        return request(DaemonProtocol.COMPILE_SOURCE, source);
+    }
+
+    public DaemonProtocol.Frame compilePath(Path path) throws IOException {
+        return request(DaemonProtocol.COMPILE_PATH, path.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String stats() throws IOException {
+        return new String(request(DaemonProtocol.STATS, new byte[0]).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    public String shutdown() throws IOException {
+        return new String(request(DaemonProtocol.SHUTDOWN, new byte[0]).getPayload(), StandardCharsets.UTF_8);
+    }
+
+    private DaemonProtocol.Frame request(byte kind, byte[] payload) throws IOException {
+        DaemonProtocol.writeFrame(out, kind, payload);
+        return DaemonProtocol.readFrame(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * 用法：
+     * 1.[--port N] input -o output 编译一个文件，input 和 output 都可以是 -，表示标准输入和标准输出
+     * 2.[--port N] --stats 打印守护进程的统计信息
+     * 3.[--port N] --shutdown 停止守护进程
+     */
+    public static void main(String[] args) {
+        int port = DaemonProtocol.DEFAULT_PORT;
+        int i = 0;
+        if (args.length >= 2 && args[0].equals("--port")) {
+            port = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        try (var client = new DaemonClient(port)) {
+            if (args.length == i + 1 && args[i].equals("--stats")) {
+                System.out.print(client.stats());
+                return;
+            }
+            if (args.length == i + 1 && args[i].equals("--shutdown")) {
+                System.out.print(client.shutdown());
+                return;
+            }
+            if (args.length != i + 3 || !args[i + 1].equals("-o")) {
+                System.err.println("usage: [--port N] <input> -o <output> | --stats | --shutdown");
+                System.exit(2);
+                return;
+            }
+            var input = args[i];
+            var output = args[i + 2];
+            var response = client.compileSource(input.equals("-")
+                    ? System.in.readAllBytes() : Files.readAllBytes(Path.of(input)));
+            if (response.getKind() == DaemonProtocol.OK) {
+                if (output.equals("-")) {
+                    Compiler.write(response.getPayload(), Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+                } else {
+                    Files.write(Path.of(output), response.getPayload());
+                }
+                return;
+            }
+            (output.equals("-") ? System.err : System.out).println("编译错误");
+            System.err.println(new String(response.getPayload(), StandardCharsets.UTF_8));
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println("Cannot talk to compile daemon on port " + port + ": " + e.getMessage());
+            System.exit(3);
+        }
+    }
+}
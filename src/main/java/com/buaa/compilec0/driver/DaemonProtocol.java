@@ -0,0 +1,152 @@
+package com.buaa.compilec0.driver;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+
+/**
+ * 编译守护进程和客户端之间的协议，一个连接上可以依次发多个请求
+ * 回环地址上的 TCP 没有文件权限保护，本机的其他用户也连得上，所以每个连接的第一帧必须是 AUTH：
+ * 守护进程启动时生成随机的令牌，写进只有自己能读的令牌文件（见 tokenFile），客户端读出来发过去，
+ * 对上了才回 OK，否则回 FAILED 并断开
+ * 请求：1 字节类型 + 4 字节长度（大端序）+ 内容
+ * 0.AUTH 内容为令牌
+ * 1.COMPILE_SOURCE 内容为源文件的字节
+ * 2.COMPILE_PATH 内容为 UTF-8 编码的路径，由守护进程自己读文件
+ * 3.STATS 没有内容，返回吞吐量和延迟直方图
+ * 4.SHUTDOWN 没有内容，处理完正在进行的请求后退出
+ * 响应：1 字节状态 + 4 字节长度 + 内容
+ * 1.OK 内容为 o0 文件或统计信息
+ * 2.COMPILE_ERROR 内容为 UTF-8 编码的编译错误
+ * 3.FAILED 内容为 UTF-8 编码的其它错误，比如读不到文件
+ */
+public final class DaemonProtocol {
+    public static final int DEFAULT_PORT = 7410;
+
+    public static final byte AUTH = 'A';
+    public static final byte COMPILE_SOURCE = 'S';
+    public static final byte COMPILE_PATH = 'P';
+    public static final byte STATS = 'T';
+    public static final byte SHUTDOWN = 'Q';
+
+    public static final byte OK = 0;
+    public static final byte COMPILE_ERROR = 1;
+    public static final byte FAILED = 2;
+
+    // 内容的长度上限
+    public static final int MAX_PAYLOAD = 64 << 20;
+
+    public static final int TOKEN_LENGTH = 32;
+
+    private DaemonProtocol() {
+    }
+
+    public static void writeFrame(DataOutputStream out, byte kind, byte[] payload) throws IOException {
+        out.writeByte(kind);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * @return 帧的类型，连接在帧开始之前关闭时返回 -1
+     */
+    public static int readKind(DataInputStream in) throws IOException {
+        return in.read();
+    }
+
+    public static byte[] readPayload(DataInputStream in) throws IOException {
+        return readPayload(in, MAX_PAYLOAD);
+    }
+
+    /**
+     * @param maxLength 内容的长度上限，认证之前只收令牌那么长的内容
+     */
+    public static byte[] readPayload(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("bad payload length: " + length);
+        }
+        var payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * 读一整个帧，连接提前关闭时抛出 EOFException
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int kind = readKind(in);
+        if (kind < 0) {
+            throw new EOFException("connection closed");
+        }
+        return new Frame((byte) kind, readPayload(in));
+    }
+
+    /**
+     * 令牌文件默认放在用户主目录下的 .compilec0 里
+     */
+    public static Path defaultTokenDirectory() {
+        return Path.of(System.getProperty("user.home"), ".compilec0");
+    }
+
+    /**
+     * 每个端口一个令牌文件，同一台机器上可以同时跑几个守护进程
+     */
+    public static Path tokenFile(Path directory, int port) {
+        return directory.resolve("daemon-" + port + ".token");
+    }
+
+    /**
+     * 生成新的令牌，写进 file
+     * 支持 POSIX 权限的文件系统上目录为 0700、文件为 0600；先写到临时文件再改名，
+     * 所以文件一出现权限就已经是 0600，也会替换掉上次没删掉的旧文件
+     */
+    public static byte[] createToken(Path file) throws IOException {
+        var token = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(token);
+        var directory = file.toAbsolutePath().getParent();
+        boolean posix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+        FileAttribute<?>[] attributes = posix
+                ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))}
+                : new FileAttribute<?>[0];
+        var temp = Files.createTempFile(directory, "daemon-", ".tmp", attributes);
+        try {
+            Files.write(temp, token);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return token;
+    }
+
+    public static final class Frame {
+        private final byte kind;
+        private final byte[] payload;
+
+        public Frame(byte kind, byte[] payload) {
+            this.kind = kind;
+            this.payload = payload;
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
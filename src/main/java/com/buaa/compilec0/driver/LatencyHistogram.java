@@ -0,0 +1,66 @@
+package com.buaa.compilec0.driver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 并发记录延迟的直方图
+ * 第 i 个桶记录 [2^i, 2^(i+1)) 微秒的样本（第 0 个桶包括不到 1 微秒的），分位数取所在桶的上界
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 1);
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        counts.incrementAndGet(bucket);
+        total.incrementAndGet();
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * @param quantile 0 到 1 之间
+     * @return 微秒，没有样本时为 0
+     */
+    public long percentileMicros(double quantile) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(quantile * n), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return 1L << (i + 1);
+            }
+        }
+        return 1L << BUCKETS;
+    }
+
+    public long maxMicros() {
+        return max.get() / 1000;
+    }
+
+    /**
+     * 分位数和每个非空的桶，每行一项
+     */
+    public void appendTo(StringBuilder out) {
+        out.append(String.format("latency p50 <= %d us, p90 <= %d us, p99 <= %d us, max %d us%n",
+                percentileMicros(0.5), percentileMicros(0.9), percentileMicros(0.99), maxMicros()));
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c != 0) {
+                out.append(String.format("  < %10d us  %d%n", 1L << (i + 1), c));
+            }
+        }
+    }
+}
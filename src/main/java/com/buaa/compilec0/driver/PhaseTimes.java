@@ -0,0 +1,73 @@
+package com.buaa.compilec0.driver;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 编译各阶段的累计耗时，--time-phases 时在结束后打印
+ * 批量编译时多个线程同时累加，所以用 AtomicLongArray
+ * 词法分析是语法分析按需拉取的，两者合在 analyse 里；不经过内存直接从文件编译时，读文件也算在 analyse 里
+ */
+public final class PhaseTimes {
+
+    /**
+     * 不记录的实例，不需要计时的调用方传这个，省得到处判断 null
+     */
+    public static final PhaseTimes NONE = new PhaseTimes(false);
+
+    private final boolean enabled;
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+
+    public PhaseTimes() {
+        this(true);
+    }
+
+    private PhaseTimes(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 把从 start（System.nanoTime() 的值）到现在的时间记到 phase 上
+     */
+    public void stop(Phase phase, long start) {
+        if (enabled) {
+            nanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+        }
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    /**
+     * 每个阶段一行：耗时和占总耗时的比例，没有用到的阶段不打印
+     */
+    public void print(PrintStream out) {
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            total += getNanos(phase);
+        }
+        for (Phase phase : Phase.values()) {
+            long phaseNanos = getNanos(phase);
+            if (phaseNanos > 0) {
+                out.printf("%-8s %10.3f ms %5.1f%%%n", phase, phaseNanos / 1e6, phaseNanos * 100.0 / total);
+            }
+        }
+        out.printf("%-8s %10.3f ms%n", "total", total / 1e6);
+    }
+
+    public enum Phase {
+        READ("read"), CACHE("cache"), ANALYSE("analyse"), OPTIMISE("optimise"), ENCODE("encode"), WRITE("write");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
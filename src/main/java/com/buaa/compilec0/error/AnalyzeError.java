@@ -6,7 +6,7 @@ public class AnalyzeError extends CompileError {
     private static final long serialVersionUID = 1L;
 
     ErrorCode code;
-    Pos pos;
+    long pos;
 
     @Override
     public ErrorCode getErr() {
@@ -15,7 +15,7 @@ public class AnalyzeError extends CompileError {
 
     @Override
     public Pos getPos() {
-        return pos;
+        return Pos.unpack(pos);
     }
 
     /**
@@ -24,12 +24,21 @@ public class AnalyzeError extends CompileError {
      * @param pos
      */
     public AnalyzeError(ErrorCode code, Pos pos) {
+        this.code = code;
+        this.pos = pos.pack();
+    }
+
+    /**
+     * @param code
+     * @param pos 用 Pos.pack 打包的位置
+     */
+    public AnalyzeError(ErrorCode code, long pos) {
         this.code = code;
         this.pos = pos;
     }
 
     @Override
     public String toString() {
-        return new StringBuilder().append("Analyze Error: ").append(code).append(", at: ").append(pos).toString();
+        return new StringBuilder().append("Analyze Error: ").append(code).append(", at: ").append(getPos()).toString();
     }
 }
@@ -7,9 +7,18 @@ public class TokenizeError extends CompileError {
     private static final long serialVersionUID = 1L;
 
     private ErrorCode err;
-    private Pos pos;
+    private long pos;
 
     public TokenizeError(ErrorCode err, Pos pos) {
+        super();
+        this.err = err;
+        this.pos = pos.pack();
+    }
+
+    /**
+     * @param pos 用 Pos.pack 打包的位置
+     */
+    public TokenizeError(ErrorCode err, long pos) {
         super();
         this.err = err;
         this.pos = pos;
@@ -18,7 +27,7 @@ public class TokenizeError extends CompileError {
     public TokenizeError(ErrorCode err, Integer row, Integer col) {
         super();
         this.err = err;
-        this.pos = new Pos(row, col);
+        this.pos = Pos.pack(row, col);
     }
 
     public ErrorCode getErr() {
@@ -26,11 +35,11 @@ public class TokenizeError extends CompileError {
     }
 
     public Pos getPos() {
-        return pos;
+        return Pos.unpack(pos);
     }
 
     @Override
     public String toString() {
-        return new StringBuilder().append("Tokenize Error: ").append(err).append(", at: ").append(pos).toString();
+        return new StringBuilder().append("Tokenize Error: ").append(err).append(", at: ").append(getPos()).toString();
     }
 }
@@ -0,0 +1,186 @@
+package com.buaa.compilec0.optimizer;
+
+import com.buaa.compilec0.assembler.BasicBlock;
+import com.buaa.compilec0.assembler.ControlFlowGraph;
+import com.buaa.compilec0.assembler.InstructionBuffer;
+import com.buaa.compilec0.assembler.Operation;
+import com.buaa.compilec0.symbol.DataType;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/**
+ * 在控制流图上删掉不会执行或者没有作用的代码
+ * 1.条件是常量的跳转（常量折叠后 push c; brtrue）改成 br 或者顺序执行，不会走的分支就到不了了
+ * 2.从入口到不了的块整个删掉，比如 return、break、continue 后面的语句
+ * 3.从来不读的局部变量，赋值只保留右边表达式的副作用，没有副作用的整个删掉
+ * 局部变量只用 loca n 取地址，读是 loca n; load64，写是 loca n; 表达式; store64，
+ * 表达式里没有跳转和赋值，所以 loca n 后面第一条 store64 就是写它的那条
+ */
+public final class DeadCodeEliminator {
+
+    private DeadCodeEliminator() {
+    }
+
+    /**
+     * @return 删掉了几条指令（不算跳转）
+     */
+    public static int eliminate(ControlFlowGraph graph) {
+        int removed = foldConstantBranches(graph);
+        removeUnreachable(graph);
+        removed += removeDeadStores(graph);
+        return removed;
+    }
+
+    /**
+     * 能走出函数末尾的块补上 ret，没有返回值的函数就是正常返回；
+     * 有返回值的函数补 panic，和不优化时走出末尾的结果一样
+     * _start 要走出末尾虚拟机才知道程序结束了，不能调用
+     */
+    public static void terminate(ControlFlowGraph graph) {
+        var exit = graph.getFunction().getReturnType() == DataType.VOID ? Operation.ret : Operation.panic;
+        BasicBlock end = null;
+        for (var block : graph.getBlocks().toArray(new BasicBlock[0])) {
+            if (!block.fallsOffEnd()) {
+                continue;
+            }
+            if (block.getTerminator() == null) {
+                block.exit(exit);
+            } else {
+                if (end == null) {
+                    end = graph.newBlock();
+                    end.exit(exit);
+                }
+                block.branch(block.getTerminator(), block.getTarget(), end);
+            }
+        }
+    }
+
+    private static int foldConstantBranches(ControlFlowGraph graph) {
+        int removed = 0;
+        for (var block : graph.getBlocks()) {
+            var terminator = block.getTerminator();
+            var instructions = block.getInstructions();
+            int last = instructions.size() - 1;
+            if ((terminator != Operation.brtrue && terminator != Operation.brfalse)
+                    || last < 0 || instructions.getOperation(last) != Operation.push) {
+                continue;
+            }
+            boolean taken = (instructions.getOperand(last) != 0) == (terminator == Operation.brtrue);
+            instructions.truncate(last);
+            removed++;
+            if (taken) {
+                block.branch(Operation.br, block.getTarget(), null);
+            } else {
+                block.fallThrough(block.getNext());
+            }
+        }
+        return removed;
+    }
+
+    private static void removeUnreachable(ControlFlowGraph graph) {
+        var reachable = new HashSet<BasicBlock>();
+        var queue = new ArrayDeque<BasicBlock>();
+        reachable.add(graph.getEntry());
+        queue.add(graph.getEntry());
+        while (!queue.isEmpty()) {
+            for (var successor : queue.poll().successors()) {
+                if (reachable.add(successor)) {
+                    queue.add(successor);
+                }
+            }
+        }
+        graph.getBlocks().removeIf(block -> !reachable.contains(block));
+    }
+
+    private static int removeDeadStores(ControlFlowGraph graph) {
+        var read = new HashSet<Long>();
+        for (var block : graph.getBlocks()) {
+            var instructions = block.getInstructions();
+            for (int i = 0; i + 1 < instructions.size(); i++) {
+                if (instructions.getOperation(i) == Operation.loca && instructions.getOperation(i + 1) == Operation.load64) {
+                    read.add(instructions.getOperand(i));
+                }
+            }
+            // 块的最后一条是 loca 时不知道怎么用，当作读
+            int last = instructions.size() - 1;
+            if (last >= 0 && instructions.getOperation(last) == Operation.loca) {
+                read.add(instructions.getOperand(last));
+            }
+        }
+        int removed = 0;
+        for (var block : graph.getBlocks()) {
+            removed += removeDeadStores(block.getInstructions(), read);
+        }
+        return removed;
+    }
+
+    private static int removeDeadStores(InstructionBuffer instructions, HashSet<Long> read) {
+        int size = instructions.size();
+        var result = new InstructionBuffer(Math.max(16, size));
+        for (int i = 0; i < size; i++) {
+            int store = i + 1;
+            if (instructions.getOperation(i) == Operation.loca && !read.contains(instructions.getOperand(i))) {
+                while (store < size && instructions.getOperation(store) != Operation.store64) {
+                    store++;
+                }
+            }
+            if (store == i + 1 || store == size) {
+                result.add(instructions.getOperation(i), instructions.getOperand(i));
+                continue;
+            }
+            boolean pure = true;
+            for (int k = i + 1; k < store; k++) {
+                pure &= isPure(instructions.getOperation(k));
+            }
+            // 有副作用时保留表达式，store64 换成 pop 丢掉结果
+            if (!pure) {
+                for (int k = i + 1; k < store; k++) {
+                    result.add(instructions.getOperation(k), instructions.getOperand(k));
+                }
+                result.add(Operation.pop);
+            }
+            i = store;
+        }
+        int removed = size - result.size();
+        if (removed > 0) {
+            instructions.truncate(0);
+            for (int i = 0; i < result.size(); i++) {
+                instructions.add(result.getOperation(i), result.getOperand(i));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 没有副作用、也不会出错的指令；divi 可能除以 0，不算
+     */
+    private static boolean isPure(Operation operation) {
+        switch (operation) {
+            case push:
+            case loca:
+            case arga:
+            case globa:
+            case load64:
+            case addi:
+            case subi:
+            case muli:
+            case addf:
+            case subf:
+            case mulf:
+            case divf:
+            case cmpi:
+            case cmpf:
+            case negi:
+            case negf:
+            case itof:
+            case ftoi:
+            case not:
+            case setlt:
+            case setgt:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
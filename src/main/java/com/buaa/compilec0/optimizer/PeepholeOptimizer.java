@@ -0,0 +1,207 @@
+package com.buaa.compilec0.optimizer;
+
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.assembler.Function;
+import com.buaa.compilec0.assembler.InstructionBuffer;
+import com.buaa.compilec0.assembler.Operation;
+
+/**
+ * 窥孔优化，在 Analyser 生成的指令序列上做局部改写
+ * 1.删掉 nop、stackalloc 0 和跳到下一条指令的 br
+ * 2.brtrue 1; br N 改成 brfalse N（brfalse 1; br N 同理）
+ * 3.not; brtrue X 改成 brfalse X，not; brfalse X 改成 brtrue X，所以 >=、<=、== 的条件都少一两条指令
+ * 4.push 0; addi / subi 和 push 1; muli / divi 整个删掉
+ * 5.自己赋值给自己（loca n; loca n; load64; store64）整个删掉
+ * 6.跳到 br 的跳转直接跳到那条 br 的目标
+ * 跳转先换成函数内的绝对下标，改写后再重新算相对偏移；被删掉的指令如果是跳转目标，就跳到它后面第一条留下来的指令
+ * 改写多条指令时，除了第一条，其它指令都不能是跳转目标，否则别处跳进来会看到改写后的语义
+ */
+public final class PeepholeOptimizer {
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    // 跳转串起来成环时每一轮都可能改目标，限制轮数保证结束
+    private static final int MAX_PASSES = 16;
+
+    private int size;
+    private byte[] operations;
+    private long[] operands;
+    // 跳转指令的绝对目标，可以等于 size（跳出函数末尾），不是跳转时为 -1
+    private int[] targets;
+    private boolean[] deleted;
+    private boolean[] targeted;
+
+    private PeepholeOptimizer(InstructionBuffer code) {
+        size = code.size();
+        operations = new byte[size];
+        operands = new long[size];
+        targets = new int[size];
+        for (int i = 0; i < size; i++) {
+            operations[i] = (byte) code.getOpcode(i);
+            operands[i] = code.getOperand(i);
+            targets[i] = isBranch(i) ? i + 1 + (int) operands[i] : -1;
+        }
+    }
+
+    /**
+     * 优化所有函数，包括 _start
+     * @return 一共少了几条指令
+     */
+    public static int optimize(Assembler assembler) {
+        int removed = optimize(assembler.startFunction);
+        for (Function function : assembler.functions) {
+            removed += optimize(function);
+        }
+        return removed;
+    }
+
+    /**
+     * @return 少了几条指令
+     */
+    public static int optimize(Function function) {
+        var code = function.getInstructions();
+        int before = code.size();
+        var optimizer = new PeepholeOptimizer(code);
+        for (int pass = 0; pass < MAX_PASSES && optimizer.pass(); pass++) {
+            optimizer.compact();
+        }
+        optimizer.writeTo(code);
+        return before - code.size();
+    }
+
+    /**
+     * 从前往后扫一遍
+     * @return 有没有改动
+     */
+    private boolean pass() {
+        boolean changed = false;
+        // 先改完所有跳转的目标，下面判断哪些指令是跳转目标时才准
+        for (int i = 0; i < size; i++) {
+            changed |= thread(i);
+        }
+        deleted = new boolean[size];
+        targeted = new boolean[size + 1];
+        for (int i = 0; i < size; i++) {
+            if (targets[i] >= 0) {
+                targeted[targets[i]] = true;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            changed |= !deleted[i] && rewrite(i);
+        }
+        return changed;
+    }
+
+    /**
+     * 跳到 br 的跳转直接跳到那条 br 的目标；br 跳到自己是死循环，保持不变
+     */
+    private boolean thread(int i) {
+        int target = targets[i];
+        if (target < 0 || target >= size || operation(target) != Operation.br || targets[target] == target) {
+            return false;
+        }
+        targets[i] = targets[target];
+        return true;
+    }
+
+    private boolean rewrite(int i) {
+        var operation = operation(i);
+        if (operation == Operation.nop || (operation == Operation.stackalloc && operands[i] == 0)) {
+            deleted[i] = true;
+            return true;
+        }
+        if (operation == Operation.br && targets[i] == i + 1) {
+            deleted[i] = true;
+            return true;
+        }
+        // brtrue 1; br N -> brfalse N
+        if ((operation == Operation.brtrue || operation == Operation.brfalse) && targets[i] == i + 2
+                && is(i + 1, Operation.br) && !targeted[i + 1]) {
+            set(i, operation == Operation.brtrue ? Operation.brfalse : Operation.brtrue);
+            targets[i] = targets[i + 1];
+            deleted[i + 1] = true;
+            return true;
+        }
+        // not; brtrue X -> brfalse X
+        if (operation == Operation.not && !targeted[i + 1]) {
+            if (is(i + 1, Operation.brtrue) || is(i + 1, Operation.brfalse)) {
+                set(i + 1, is(i + 1, Operation.brtrue) ? Operation.brfalse : Operation.brtrue);
+                deleted[i] = true;
+                return true;
+            }
+        }
+        // push 0; addi / subi，push 1; muli / divi
+        if (operation == Operation.push && !targeted[i + 1]) {
+            if ((operands[i] == 0 && (is(i + 1, Operation.addi) || is(i + 1, Operation.subi)))
+                    || (operands[i] == 1 && (is(i + 1, Operation.muli) || is(i + 1, Operation.divi)))) {
+                deleted[i] = true;
+                deleted[i + 1] = true;
+                return true;
+            }
+        }
+        // x = x
+        if (isAddress(operation) && is(i + 1, operation) && operands[i + 1] == operands[i]
+                && is(i + 2, Operation.load64) && is(i + 3, Operation.store64)
+                && !targeted[i + 1] && !targeted[i + 2] && !targeted[i + 3]) {
+            for (int k = i; k < i + 4; k++) {
+                deleted[k] = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 去掉删掉的指令，重新算跳转目标
+     */
+    private void compact() {
+        var newIndex = new int[size + 1];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            newIndex[i] = count;
+            if (!deleted[i]) {
+                count++;
+            }
+        }
+        newIndex[size] = count;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (deleted[i]) {
+                continue;
+            }
+            operations[next] = operations[i];
+            operands[next] = operands[i];
+            targets[next] = targets[i] >= 0 ? newIndex[targets[i]] : -1;
+            next++;
+        }
+        size = count;
+    }
+
+    private void writeTo(InstructionBuffer code) {
+        code.truncate(0);
+        for (int i = 0; i < size; i++) {
+            long operand = targets[i] >= 0 ? targets[i] - i - 1 : operands[i];
+            code.add(operation(i), operand);
+        }
+    }
+
+    private Operation operation(int i) {
+        return OPERATIONS[operations[i]];
+    }
+
+    private boolean is(int i, Operation operation) {
+        return i < size && !deleted[i] && operations[i] == operation.ordinal();
+    }
+
+    private void set(int i, Operation operation) {
+        operations[i] = (byte) operation.ordinal();
+    }
+
+    private boolean isBranch(int i) {
+        var operation = operation(i);
+        return operation == Operation.br || operation == Operation.brtrue || operation == Operation.brfalse;
+    }
+
+    private static boolean isAddress(Operation operation) {
+        return operation == Operation.loca || operation == Operation.arga || operation == Operation.globa;
+    }
+}
@@ -1,9 +1,25 @@
 package com.buaa.compilec0.symbol;
 
-import com.buaa.compilec0.util.Pos;
 
 public class ConstantSymbol extends Symbol{
-    public ConstantSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, Pos startPos) {
+    //初始值在编译时就能算出来时为它的 64 位表示（浮点数为 IEEE 754），用于常量折叠
+    private boolean valueKnown = false;
+    private long value;
+
+    public ConstantSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, long startPos) {
         super(symbolType, dataType, symbolName, level, offset, startPos);
     }
+
+    public boolean isValueKnown() {
+        return valueKnown;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+        this.valueKnown = true;
+    }
 }
@@ -3,7 +3,6 @@ package com.buaa.compilec0.symbol;
 import com.buaa.compilec0.error.AnalyzeError;
 import com.buaa.compilec0.error.CompileError;
 import com.buaa.compilec0.error.ErrorCode;
-import com.buaa.compilec0.util.Pos;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -29,7 +28,7 @@ public class FunctionSymbol extends Symbol {
      * @param offset        globalOffset
      * @param startPos      开始的位置
      */
-    public FunctionSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, Pos startPos) {
+    public FunctionSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, long startPos) {
         super(symbolType, dataType, symbolName, level, offset, startPos);
         this.paramsMap = new HashMap<>();
         this.params = new ArrayList<>();
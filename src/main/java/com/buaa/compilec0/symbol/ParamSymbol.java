@@ -1,6 +1,5 @@
 package com.buaa.compilec0.symbol;
 
-import com.buaa.compilec0.util.Pos;
 
 public class ParamSymbol extends Symbol{
     private boolean isConstant;     //这个参数是否是常量
@@ -14,7 +13,7 @@ public class ParamSymbol extends Symbol{
      * @param startPos      开始位置
      * @param isConstant    是不是常量
      */
-    public ParamSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, Pos startPos, boolean isConstant) {
+    public ParamSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, long startPos, boolean isConstant) {
         super(symbolType, dataType, symbolName, level+1, offset, startPos);
         this.isConstant = isConstant;
     }
@@ -8,9 +8,9 @@ public class Symbol {
     private String symbolName;          //符号的名称ident
     private int level;                  //符号所在的层次
     private long offset;
-    private Pos startPos;               //符号的起始位置
+    private long startPos;              //符号的起始位置，用 Pos.pack 打包
 
-    public Symbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, Pos startPos) {
+    public Symbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, long startPos) {
         this.symbolType = symbolType;
         this.dataType = dataType;
         this.symbolName = symbolName;
@@ -27,7 +27,7 @@ public class Symbol {
                 ", symbolName='" + symbolName + '\'' +
                 ", level=" + level +
                 ", offset=" + offset +
-                ", startPos=" + startPos +
+                ", startPos=" + Pos.unpack(startPos) +
                 '}';
     }
 
@@ -51,11 +51,11 @@ public class Symbol {
         return symbolName;
     }
 
-    public Pos getStartPos() {
+    public long getStartPos() {
         return startPos;
     }
 
-    public void setStartPos(Pos startPos) {
+    public void setStartPos(long startPos) {
         this.startPos = startPos;
     }
 
@@ -3,294 +3,318 @@ package com.buaa.compilec0.symbol;
 import com.buaa.compilec0.error.AnalyzeError;
 import com.buaa.compilec0.error.CompileError;
 import com.buaa.compilec0.error.ErrorCode;
-import com.buaa.compilec0.util.Pos;
+import com.buaa.compilec0.tokenizer.Identifiers;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
+/**
+ * 栈式符号表，用标识符的编号（见 Identifiers）作为键
+ * 所有层的符号放在同一组数组里，每个符号是一个条目：
+ * 1.heads[编号] 指向这个名字最内层的条目，条目的 shadowed 指向被它遮住的外层条目
+ * 2.条目按添加的顺序排列，scopeStarts 记录每一层的第一个条目，弹出一层时倒序撤销
+ * 查找只看一条遮蔽链，和嵌套的层数无关；进出一层不分配对象
+ * level = 0 为主程序符号表，栈底
+ */
 public class SymbolTable {
-    /**
-     * 将每层的符号表组织成一个链表
-     * level = 0 为主程序符号表，栈底，栈式符号表结构
-     */
-    public ArrayList<HashMap<String, Symbol>> symbolTables = new ArrayList<>();
+    private static final int NONE = -1;
+
+    private final Identifiers identifiers;
+
+    // 编号 -> 最内层的条目，没有时为 NONE
+    private int[] heads = new int[64];
+
+    // 条目
+    private Symbol[] symbols = new Symbol[64];
+    private int[] ids = new int[64];
+    private int[] levels = new int[64];
+    private int[] shadowed = new int[64];
+    private int entryCount = 0;
+
+    // 每一层第一个条目的下标
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
+    public SymbolTable(Identifiers identifiers) {
+        this.identifiers = identifiers;
+        Arrays.fill(heads, NONE);
+    }
 
     /**
      * 获得下一层符号表
      * 即入栈一个新的符号表
      */
     public void pushSymbolTable() {
-        symbolTables.add(new HashMap<>());
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = entryCount;
     }
 
     /**
      * 弹出符号表
-     * 即弹栈符号表
+     * 即弹栈符号表，倒序撤销这一层添加的条目
      */
     public void popSymbolTable() {
-        symbolTables.remove(symbolTables.size()-1);
+        int start = scopeStarts[--depth];
+        for (int i = entryCount - 1; i >= start; i--) {
+            heads[ids[i]] = shadowed[i];
+            symbols[i] = null;
+        }
+        entryCount = start;
     }
 
     /**
      * 是否在同层符号表中存在该符号
      * @param level 符号表的层数
-     * @param symbolName 符号的名称
+     * @param symbolId 符号名称的编号
      * @param startPos 开始的位置
      * @return true 存在
      * @throws AnalyzeError
      */
-    public boolean isSymbolExistedInSameLevel(int level, String symbolName, Pos startPos) throws CompileError {
-        if (level >= symbolTables.size()) {
-            throw new AnalyzeError(ErrorCode.SymbolLevelNotExist, startPos);
-        }
-        return symbolTables.get(level).get(symbolName) != null;
+    public boolean isSymbolExistedInSameLevel(int level, int symbolId, long startPos) throws CompileError {
+        checkLevel(level, startPos);
+        int entry = visibleEntry(level, symbolId);
+        return entry != NONE && levels[entry] == level;
     }
 
     /**
      * 查看在本层及父层中是否存在该符号
      * @param level 层数
-     * @param symbolName 符号名称
+     * @param symbolId 符号名称的编号
      * @param startPos 开始位置
      * @return 返回值
      * @throws CompileError 编译错误
      */
-    public boolean isSymbolExistedInAllLevel(int level, String symbolName, Pos startPos) throws CompileError {
-        if (level >= symbolTables.size()) {
-            throw new AnalyzeError(ErrorCode.SymbolLevelNotExist, startPos);
-        }
-        for (int i = level; i >= 0; --i) {
-            if (symbolTables.get(i).containsKey(symbolName)) {
-                return true;
-            }
-        }
-        return false;
+    public boolean isSymbolExistedInAllLevel(int level, int symbolId, long startPos) throws CompileError {
+        checkLevel(level, startPos);
+        return visibleEntry(level, symbolId) != NONE;
     }
 
     /**
      * 用符号名称找到存在的符号
      * @param level 当前的层数
-     * @param symbolName 名称
+     * @param symbolId 符号名称的编号
      * @return Symbol 返回的符号
      * @throws CompileError
      */
-    public Symbol findSymbolBySymbolName(int level, String symbolName, Pos startPos) throws CompileError {
-        if (level >= symbolTables.size()) {
-            throw new AnalyzeError(ErrorCode.SymbolLevelNotExist, startPos);
-        }
-        for (int i = level; i >= 0 ; i--) {
-            var symbol = symbolTables.get(i).get(symbolName);
-            if (symbol != null) {
-                return symbol;
-            }
-        }
-        return null;
+    public Symbol findSymbolBySymbolName(int level, int symbolId, long startPos) throws CompileError {
+        checkLevel(level, startPos);
+        int entry = visibleEntry(level, symbolId);
+        return entry == NONE ? null : symbols[entry];
+    }
+
+    /**
+     * 用符号名称找到存在的符号
+     * 名称没有出现过的话就一定不存在
+     */
+    public Symbol findSymbolBySymbolName(int level, String symbolName, long startPos) throws CompileError {
+        checkLevel(level, startPos);
+        int symbolId = identifiers.find(symbolName);
+        return symbolId == Identifiers.NONE ? null : findSymbolBySymbolName(level, symbolId, startPos);
     }
 
     /**
      * 添加一个变量符号
      * @param dataType  数据类型
-     * @param symbolName 名称
+     * @param symbolId 名称的编号
      * @param level 层次
      * @param offset 栈上的偏移
      * @param startPos 开始的位置
      * @param initialized 是否初始化
      * @throws CompileError 编译错误
      */
-    public void addVariableSymbol(DataType dataType, String symbolName, int level,
-                                         long offset, Pos startPos, boolean initialized) throws CompileError {
-        if (isSymbolExistedInSameLevel(level, symbolName, startPos)) {
-
+    public void addVariableSymbol(DataType dataType, int symbolId, int level,
+                                         long offset, long startPos, boolean initialized) throws CompileError {
+        if (isSymbolExistedInSameLevel(level, symbolId, startPos)) {
             throw new AnalyzeError(ErrorCode.DuplicateDeclaration, startPos);
         }
         else {
-            symbolTables.get(level).put(symbolName, new VariableSymbol(SymbolType.VARIABLE, dataType, symbolName, level, offset, startPos, initialized));
+            addEntry(symbolId, level, new VariableSymbol(SymbolType.VARIABLE, dataType, identifiers.nameOf(symbolId), level, offset, startPos, initialized));
         }
     }
 
     /**
      * 找到变量符号并给变量符号的initialized
      * @param level 层数
-     * @param symbolName 名称
+     * @param symbolId 名称的编号
      * @param startPos 位置
      * @throws CompileError
      */
-    public void setVariableInitialized(int level, String symbolName, Pos startPos) throws CompileError {
-        if (level >= symbolTables.size()) {
-            throw new AnalyzeError(ErrorCode.SymbolLevelNotExist, startPos);
-        }
-        if (findSymbolBySymbolName(level, symbolName, startPos) == null) {
+    public void setVariableInitialized(int level, int symbolId, long startPos) throws CompileError {
+        checkLevel(level, startPos);
+        int entry = visibleEntry(level, symbolId);
+        if (entry == NONE) {
             throw new AnalyzeError(ErrorCode.NotDeclared, startPos);
         }
-        for (int i = 0; i <= level; i++) {
-            var symbol = symbolTables.get(i).get(symbolName);
-            if (symbol != null) {
-                var _symbol = (VariableSymbol) symbol;
-                _symbol.setInitialized(true);
-            }
+        // 和原来一样，本层及父层所有同名的符号都设置上
+        for (; entry != NONE; entry = shadowed[entry]) {
+            var _symbol = (VariableSymbol) symbols[entry];
+            _symbol.setInitialized(true);
         }
     }
 
     /**
      * 添加一个常量符号
      * @param dataType  数据类型
-     * @param symbolName 名称
+     * @param symbolId 名称的编号
      * @param level 层次
      * @param offset 栈上的偏移
      * @param startPos 开始的位置
+     * @return 新加的符号
      * @throws CompileError 编译错误
      */
-    public void addConstantSymbol(DataType dataType, String symbolName, int level,
-                                         long offset, Pos startPos) throws CompileError {
-        if (isSymbolExistedInSameLevel(level, symbolName, startPos)) {
+    public ConstantSymbol addConstantSymbol(DataType dataType, int symbolId, int level,
+                                         long offset, long startPos) throws CompileError {
+        if (isSymbolExistedInSameLevel(level, symbolId, startPos)) {
             throw new AnalyzeError(ErrorCode.DuplicateDeclaration, startPos);
         }
         else {
-            symbolTables.get(level).put(symbolName, new ConstantSymbol(SymbolType.CONSTANT, dataType, symbolName, level, offset, startPos));
+            var symbol = new ConstantSymbol(SymbolType.CONSTANT, dataType, identifiers.nameOf(symbolId), level, offset, startPos);
+            addEntry(symbolId, level, symbol);
+            return symbol;
         }
     }
 
     /**
      * 添加一个函数符号
      * @param dataType 数据类型
-     * @param symbolName 名称
+     * @param symbolId 名称的编号
      * @param level 层次
      * @param offset 栈上的偏移
      * @param startPos 开始的位置
      * @throws CompileError 编译错误
      */
-    public void addFunctionSymbol(DataType dataType, String symbolName, int level,
-                                         long offset, Pos startPos) throws CompileError {
-        if (isSymbolExistedInSameLevel(level, symbolName, startPos)) {
+    public void addFunctionSymbol(DataType dataType, int symbolId, int level,
+                                         long offset, long startPos) throws CompileError {
+        if (isSymbolExistedInSameLevel(level, symbolId, startPos)) {
             throw new AnalyzeError(ErrorCode.DuplicateDeclaration, startPos);
         }
         else {
-            symbolTables.get(level).put(symbolName, new FunctionSymbol(SymbolType.FUNCTION, dataType, symbolName, level, offset, startPos));
+            addEntry(symbolId, level, new FunctionSymbol(SymbolType.FUNCTION, dataType, identifiers.nameOf(symbolId), level, offset, startPos));
         }
     }
 
     /**
      * 给函数增加一个参数 会检查是否有同名的参数
-     * @param functionName  函数名称
+     * @param functionId  函数名称的编号
      * @param dataType 参数类型
-     * @param symbolName 参数名称
+     * @param symbolId 参数名称的编号
      * @param level 所属的层数
      * @param offset 栈上的偏移
      * @param startPos 开始的位置
      * @throws CompileError
      */
-    public void addFunctionParamSymbol(String functionName, DataType dataType, String symbolName, int level,
-                                       long offset, Pos startPos, boolean isConstant) throws CompileError{
-        var table = symbolTables.get(0);
-        var functionSymbol = table.get(functionName);
-        if (functionSymbol == null) {
-            throw new AnalyzeError(ErrorCode.FunctionNotDeclared, startPos);
-        }
-        FunctionSymbol _functionSymbol;
-        if (functionSymbol instanceof FunctionSymbol) {
-            _functionSymbol = (FunctionSymbol) functionSymbol;
-            _functionSymbol.addParams(symbolName, new ParamSymbol(SymbolType.PARAM, dataType, symbolName, level, offset, startPos, isConstant));
-        }
-        else {
-            throw new AnalyzeError(ErrorCode.NotAFunction, startPos);
-        }
+    public void addFunctionParamSymbol(int functionId, DataType dataType, int symbolId, int level,
+                                       long offset, long startPos, boolean isConstant) throws CompileError{
+        var _functionSymbol = findFunctionSymbol(functionId, ErrorCode.FunctionNotDeclared, startPos);
+        var symbolName = identifiers.nameOf(symbolId);
+        _functionSymbol.addParams(symbolName, new ParamSymbol(SymbolType.PARAM, dataType, symbolName, level, offset, startPos, isConstant));
     }
 
     /**
      * 给函数设置返回值类型
-     * @param functionName  函数名称
+     * @param functionId  函数名称的编号
      * @param returnType 返回类型
      * @param startPos 开始位置
      * @throws CompileError 错误
      */
-    public void setFunctionSymbolReturnType(String functionName, DataType returnType, Pos startPos) throws CompileError{
-        var table = symbolTables.get(0);
-        var functionSymbol = table.get(functionName);
-        if (functionSymbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, startPos);
-        }
-        FunctionSymbol _functionSymbol;
-        if (functionSymbol instanceof FunctionSymbol) {
-            _functionSymbol = (FunctionSymbol) functionSymbol;
-            _functionSymbol.setReturnType(returnType);
-        }
-        else {
-            throw new AnalyzeError(ErrorCode.NotAFunction, startPos);
-        }
+    public void setFunctionSymbolReturnType(int functionId, DataType returnType, long startPos) throws CompileError{
+        findFunctionSymbol(functionId, ErrorCode.NotDeclared, startPos).setReturnType(returnType);
     }
 
     /**
      * 设置函数中局部变量的数目
-     * @param functionName  函数名称
+     * @param functionId  函数名称的编号
      * @param localVariableSize 局部变量的数目
      * @param startPos  开始位置
      * @throws CompileError
      */
-    public void setFunctionLocalVariableSize(String functionName, int localVariableSize, Pos startPos) throws CompileError{
-        var table = symbolTables.get(0);
-        var functionSymbol = table.get(functionName);
-        if (functionSymbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, startPos);
-        }
-        FunctionSymbol _functionSymbol;
-        if (functionSymbol instanceof FunctionSymbol) {
-            _functionSymbol = (FunctionSymbol) functionSymbol;
-            _functionSymbol.setLocalSize(localVariableSize);
-        }
-        else {
-            throw new AnalyzeError(ErrorCode.NotAFunction, startPos);
-        }
+    public void setFunctionLocalVariableSize(int functionId, int localVariableSize, long startPos) throws CompileError{
+        findFunctionSymbol(functionId, ErrorCode.NotDeclared, startPos).setLocalSize(localVariableSize);
     }
 
     /**
      * 获得函数的参数个数
-     * @param functionName  函数名称
+     * @param functionId  函数名称的编号
      * @param startPos  开始位置
      * @return  返回参数的个数
      * @throws CompileError
      */
-    public int getParamSizeByFunctionName(String functionName, Pos startPos) throws CompileError{
-        var paramSize = 0;
-        var table = symbolTables.get(0);
-        var functionSymbol = table.get(functionName);
-        if (functionSymbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, startPos);
-        }
-        FunctionSymbol _functionSymbol;
-        if (functionSymbol instanceof FunctionSymbol) {
-            _functionSymbol = (FunctionSymbol) functionSymbol;
-            paramSize = _functionSymbol.getParamsSize();
-        }
-        else {
-            throw new AnalyzeError(ErrorCode.NotAFunction, startPos);
-        }
-        return paramSize;
+    public int getParamSizeByFunctionName(int functionId, long startPos) throws CompileError{
+        return findFunctionSymbol(functionId, ErrorCode.NotDeclared, startPos).getParamsSize();
     }
 
 
     /**
      * 判断函数中是否存在同名的参数
      * 存在的话返回该参数，否则返回null
-     * @param functionName
-     * @param paramName
+     * @param functionId 函数名称的编号
+     * @param paramId 参数名称的编号
      * @param startPos
      * @return
      * @throws CompileError
      */
-    public ParamSymbol findFunctionParamSymbolBySymbolName(String functionName, String paramName, Pos startPos) throws CompileError {
-        ParamSymbol paramSymbol;
-        var table = symbolTables.get(0);
-        var functionSymbol = table.get(functionName);
-        if (functionSymbol == null) {
-            throw new AnalyzeError(ErrorCode.NotDeclared, startPos);
+    public ParamSymbol findFunctionParamSymbolBySymbolName(int functionId, int paramId, long startPos) throws CompileError {
+        var _functionSymbol = findFunctionSymbol(functionId, ErrorCode.NotDeclared, startPos);
+        return _functionSymbol.getParamByParamName(identifiers.nameOf(paramId));
+    }
+
+    /**
+     * 在第 0 层找到函数符号
+     * @param notFound 找不到时的错误码
+     */
+    private FunctionSymbol findFunctionSymbol(int functionId, ErrorCode notFound, long startPos) throws CompileError {
+        int entry = visibleEntry(0, functionId);
+        if (entry == NONE || levels[entry] != 0) {
+            throw new AnalyzeError(notFound, startPos);
         }
-        FunctionSymbol _functionSymbol;
+        var functionSymbol = symbols[entry];
         if (functionSymbol instanceof FunctionSymbol) {
-            _functionSymbol = (FunctionSymbol) functionSymbol;
-            paramSymbol = _functionSymbol.getParamByParamName(paramName);
+            return (FunctionSymbol) functionSymbol;
         }
         else {
             throw new AnalyzeError(ErrorCode.NotAFunction, startPos);
         }
-        return paramSymbol;
     }
-}
\ No newline at end of file
+
+    private void checkLevel(int level, long startPos) throws CompileError {
+        if (level >= depth) {
+            throw new AnalyzeError(ErrorCode.SymbolLevelNotExist, startPos);
+        }
+    }
+
+    /**
+     * 沿着遮蔽链找到 level 层及父层中最内层的条目
+     */
+    private int visibleEntry(int level, int symbolId) {
+        if (symbolId >= heads.length) {
+            return NONE;
+        }
+        int entry = heads[symbolId];
+        while (entry != NONE && levels[entry] > level) {
+            entry = shadowed[entry];
+        }
+        return entry;
+    }
+
+    private void addEntry(int symbolId, int level, Symbol symbol) {
+        if (symbolId >= heads.length) {
+            int oldLength = heads.length;
+            heads = Arrays.copyOf(heads, Math.max(oldLength * 2, symbolId + 1));
+            Arrays.fill(heads, oldLength, heads.length, NONE);
+        }
+        if (entryCount == symbols.length) {
+            int length = entryCount * 2;
+            symbols = Arrays.copyOf(symbols, length);
+            ids = Arrays.copyOf(ids, length);
+            levels = Arrays.copyOf(levels, length);
+            shadowed = Arrays.copyOf(shadowed, length);
+        }
+        int entry = entryCount++;
+        symbols[entry] = symbol;
+        ids[entry] = symbolId;
+        levels[entry] = level;
+        shadowed[entry] = heads[symbolId];
+        heads[symbolId] = entry;
+    }
+}
@@ -1,11 +1,10 @@
 package com.buaa.compilec0.symbol;
 
-import com.buaa.compilec0.util.Pos;
 
 public class VariableSymbol extends Symbol{
     boolean initialized;
 
-    public VariableSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, Pos startPos, boolean initialized) {
+    public VariableSymbol(SymbolType symbolType, DataType dataType, String symbolName, int level, long offset, long startPos, boolean initialized) {
         super(symbolType, dataType, symbolName, level, offset, startPos);
         this.initialized = initialized;
     }
@@ -0,0 +1,254 @@
+package com.buaa.compilec0.tokenizer;
+
+import com.buaa.compilec0.util.Pos;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于 NIO 通道分块读取的字符来源
+ * 输入被分块解码到一个复用的 char[] 窗口里，行号和列号用 int 记录，
+ * 读取字符的过程中不会分配对象，内存占用和文件大小无关
+ *
+ * 读出来的字符序列和 StringIter 完全一致：
+ * 1.\r\n、\r 等换行统一成 \n，最后一行补上 \n
+ * 2.去掉前导空格后以 // 开头的行被当成空行
+ * 3.文件末尾的空白行不计入行数（Scanner.hasNext() 的行为）
+ * 读到文件尾时通道会自动关闭；中途出错时由调用者 close
+ */
+public class ChannelCharSource implements CharSource, Closeable {
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+    private final CharBuffer decoded = CharBuffer.allocate(CHUNK_SIZE);
+
+    // 字符窗口，[pos, limit) 为还没有读取的字符
+    private char[] window = new char[CHUNK_SIZE * 2];
+    private int pos = 0;
+    private int limit = 0;
+
+    // 解码状态
+    private boolean inputDone = false;
+    private boolean pendingCR = false;
+    private char lastChar = '\n';
+    private int fillRow = 0;
+    private int lastContentRow = -1;
+
+    // 指针指向的位置，以及上一个字符的位置
+    private int row = 0;
+    private int col = 0;
+    private int prevRow = 0;
+    private int prevCol = 0;
+    private boolean atLineStart = true;
+
+    public ChannelCharSource(ReadableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public ChannelCharSource(ReadableByteChannel channel) {
+        this(channel, Charset.defaultCharset());
+    }
+
+    public static ChannelCharSource open(Path path) throws IOException {
+        return new ChannelCharSource(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    public static ChannelCharSource of(InputStream input) {
+        return new ChannelCharSource(Channels.newChannel(input));
+    }
+
+    @Override
+    public long currentPos() {
+        if (isEOF()) {
+            return Pos.pack(lastContentRow + 1, 0);
+        }
+        return Pos.pack(row, col);
+    }
+
+    @Override
+    public long previousPos() {
+        if (row == 0 && col == 0) {
+            throw new Error("previous position from beginning");
+        }
+        return Pos.pack(prevRow, prevCol);
+    }
+
+    @Override
+    public char nextChar() {
+        if ((atLineStart || pos >= limit) && !ensureCurrent()) {
+            return 0;
+        }
+        char ch = window[pos++];
+        prevRow = row;
+        prevCol = col;
+        if (ch == '\n') {
+            row++;
+            col = 0;
+            atLineStart = true;
+        } else {
+            col++;
+        }
+        return ch;
+    }
+
+    @Override
+    public char peekChar() {
+        if ((atLineStart || pos >= limit) && !ensureCurrent()) {
+            return 0;
+        }
+        return window[pos];
+    }
+
+    @Override
+    public boolean isEOF() {
+        return (atLineStart || pos >= limit) && !ensureCurrent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 保证指针处有一个可读的字符
+     * @return 文件尾返回 false
+     */
+    private boolean ensureCurrent() {
+        if (atLineStart) {
+            atLineStart = false;
+            skipCommentLine();
+        }
+        return pos < limit || ensure(1);
+    }
+
+    /**
+     * 如果当前行去掉前导空格后以 // 开头，就跳过这一行直到 \n
+     * 列号不变，相当于这一行是空行
+     */
+    private void skipCommentLine() {
+        int i = 0;
+        while ((pos + i < limit || ensure(i + 1)) && isSpaceChar(window[pos + i])) {
+            i++;
+        }
+        if ((pos + i + 1 >= limit && !ensure(i + 2)) || window[pos + i] != '/' || window[pos + i + 1] != '/') {
+            return;
+        }
+        while (pos < limit || ensure(1)) {
+            if (window[pos] == '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isSpaceChar(char ch) {
+        return ch == ' ' || (ch >= 128 && Character.isSpaceChar(ch));
+    }
+
+    /**
+     * 保证窗口中至少有 need 个没有读取的字符
+     * @return 输入不足 need 个字符时返回 false
+     */
+    private boolean ensure(int need) {
+        while (limit - pos < need) {
+            if (inputDone) {
+                return false;
+            }
+            compact(need);
+            try {
+                readChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把未读的字符移动到窗口开头，窗口装不下时才扩容
+     */
+    private void compact(int need) {
+        if (pos > 0) {
+            System.arraycopy(window, pos, window, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (window.length - limit <= CHUNK_SIZE || window.length < need) {
+            var bigger = new char[Math.max(window.length * 2, need + CHUNK_SIZE)];
+            System.arraycopy(window, 0, bigger, 0, limit);
+            window = bigger;
+        }
+    }
+
+    /**
+     * 读入并解码一块输入，追加到窗口末尾
+     */
+    private void readChunk() throws IOException {
+        int n = channel.read(bytes);
+        boolean endOfInput = n < 0;
+        bytes.flip();
+        decoded.clear();
+        CoderResult result = decoder.decode(bytes, decoded, endOfInput);
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (endOfInput) {
+            decoder.flush(decoded);
+            inputDone = true;
+            channel.close();
+        }
+        bytes.compact();
+        decoded.flip();
+        append(decoded);
+        if (inputDone && lastChar != '\n') {
+            // 最后一行没有换行，补上一个
+            window[limit++] = '\n';
+            lastChar = '\n';
+        }
+    }
+
+    private void append(CharBuffer chars) {
+        char[] src = chars.array();
+        int end = chars.arrayOffset() + chars.limit();
+        for (int i = chars.arrayOffset() + chars.position(); i < end; i++) {
+            char ch = src[i];
+            if (pendingCR) {
+                pendingCR = false;
+                if (ch == '\n') {
+                    continue;
+                }
+            }
+            if (ch == '\r') {
+                pendingCR = true;
+                ch = '\n';
+            } else if (ch == '\u2028' || ch == '\u2029' || ch == '\u0085') {
+                ch = '\n';
+            }
+            if (ch == '\n') {
+                fillRow++;
+            } else if (!Character.isWhitespace(ch)) {
+                lastContentRow = fillRow;
+            }
+            window[limit++] = ch;
+            lastChar = ch;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.buaa.compilec0.tokenizer;
+
+/**
+ * 词法分析器读取字符的来源
+ * 约定和 StringIter 一致：
+ * 1.换行统一为 \n，并且最后一行一定以 \n 结尾
+ * 2.指针始终指向下一个要读取的 char
+ * 3.行号和列号从 0 开始
+ * 位置都是用 Pos.pack 打包的 long，读取字符的时候不产生 Pos 对象
+ */
+public interface CharSource {
+
+    /**
+     * 一次性读入全部内容
+     * 流式的实现不需要做任何事情
+     */
+    default void readAll() {
+    }
+
+    /**
+     * 获取当前字符的位置
+     */
+    long currentPos();
+
+    /**
+     * 获取上一个字符的位置
+     */
+    long previousPos();
+
+    /**
+     * 将指针指向下一个字符，并返回当前字符
+     * 到达文件尾时返回 0
+     */
+    char nextChar();
+
+    /**
+     * 查看下一个字符，但不移动指针
+     * 到达文件尾时返回 0
+     */
+    char peekChar();
+
+    boolean isEOF();
+}
@@ -0,0 +1,138 @@
+package com.buaa.compilec0.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * 标识符驻留表，每次编译一张
+ * 同名的标识符只保存一个 String，并分配一个从 0 开始的 int 编号，
+ * 之后比较标识符只需要比较编号
+ * 用开放地址法的哈希表，可以直接拿词法分析器的 char[] 缓冲区来查，不用先构造 String
+ */
+public final class Identifiers {
+    /**
+     * 不存在的标识符编号
+     */
+    public static final int NONE = -1;
+
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int count = 0;
+
+    // 槽里存的是 编号 + 1，0 表示空槽
+    private int[] table = new int[128];
+
+    /**
+     * 驻留 chars[offset, offset + length)，返回它的编号
+     */
+    public int intern(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = table[i] - 1;
+            if (id < 0) {
+                return add(new String(chars, offset, length), hash, i);
+            }
+            if (hashes[id] == hash && sameChars(names[id], chars, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * 驻留 name，返回它的编号
+     */
+    public int intern(String name) {
+        int hash = hash(name);
+        int slot = slotOf(name, hash);
+        int id = table[slot] - 1;
+        return id >= 0 ? id : add(name, hash, slot);
+    }
+
+    /**
+     * 查找 name 的编号，没有驻留过就返回 NONE
+     */
+    public int find(String name) {
+        return table[slotOf(name, hash(name))] - 1;
+    }
+
+    /**
+     * 编号对应的标识符
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * 已经驻留的标识符数量，编号都小于这个数
+     */
+    public int size() {
+        return count;
+    }
+
+    private int slotOf(String name, int hash) {
+        int mask = table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = table[i] - 1;
+            if (id < 0 || (hashes[id] == hash && names[id].equals(name))) {
+                return i;
+            }
+        }
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        // 装填因子超过 1/2 就扩容
+        if (count * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < count; id++) {
+            int i = hashes[id] & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = id + 1;
+        }
+    }
+
+    private static boolean sameChars(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        return mix(h);
+    }
+
+    private static int hash(String name) {
+        return mix(name.hashCode());
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
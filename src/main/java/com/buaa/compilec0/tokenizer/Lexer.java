@@ -0,0 +1,44 @@
+package com.buaa.compilec0.tokenizer;
+
+import com.buaa.compilec0.error.TokenizeError;
+
+/**
+ * 词法分析器
+ * 目前有两种实现：
+ * TableTokenizer 表驱动的 DFA，默认使用
+ * Tokenizer 最早手写的版本，用 -Dcompilec0.lexer=classic 选择
+ */
+public interface Lexer {
+
+    /**
+     * 获取下一个 Token
+     *
+     * @throws TokenizeError 如果解析有异常则抛出
+     */
+    Token nextToken() throws TokenizeError;
+
+    /**
+     * 把下一个 Token 写到 buffer 的 slot 槽位
+     * 默认实现先生成 Token 对象再拆开，实现类可以直接写入避免分配
+     *
+     * @throws TokenizeError 如果解析有异常则抛出
+     */
+    default void nextToken(TokenBuffer buffer, int slot) throws TokenizeError {
+        buffer.put(slot, nextToken());
+    }
+
+    /**
+     * 本次编译的标识符驻留表
+     */
+    Identifiers getIdentifiers();
+
+    /**
+     * 根据系统属性 compilec0.lexer 创建词法分析器
+     */
+    static Lexer create(CharSource source) {
+        if ("classic".equals(System.getProperty("compilec0.lexer"))) {
+            return new Tokenizer(source);
+        }
+        return new TableTokenizer(source);
+    }
+}
@@ -3,25 +3,27 @@ package com.buaa.compilec0.tokenizer;
 import com.buaa.compilec0.util.Pos;
 
 import java.util.ArrayList;
-import java.util.Optional;
 import java.util.Scanner;
 
 /**
  * 这是一个从 C++ 版本抄过来的字符迭代器
  */
-public class StringIter {
+public class StringIter implements CharSource {
     // 以行为基础的缓冲区
     ArrayList<String> linesBuffer = new ArrayList<>();
 
     Scanner scanner;
     // 指向下一个要读取的字符
-    Pos ptrNext = new Pos(0, 0);
+    int nextRow = 0;
+    int nextCol = 0;
 
-    Pos ptr = new Pos(0, 0);
+    int row = 0;
+    int col = 0;
 
     boolean initialized = false;
 
-    Optional<Character> peeked = Optional.empty();
+    boolean hasPeeked = false;
+    char peeked = 0;
 
     public StringIter(Scanner scanner) {
         this.scanner = scanner;
@@ -36,6 +38,7 @@ public class StringIter {
 
     // 一次读入全部内容，并且替换所有换行为 \n
     // 这样其实是不合理的，这里只是简单起见这么实现
+    @Override
     public void readAll() {
         if (initialized) {
             return;
@@ -66,84 +69,92 @@ public class StringIter {
     // previousPos() = (0, 8)
     // nextChar() = '\n' 并且指针移动到 (1, 0)
     // unreadLast() 指针移动到 (0, 8)
+    // 位置都是用 Pos.pack 打包后的 long
     /**
      * 获取下一个字符的位置
      */
-    public Pos nextPos() {
-        if (ptr.row >= linesBuffer.size()) {
+    public long nextPos() {
+        if (row >= linesBuffer.size()) {
             throw new Error("advance after EOF");
         }
-        if (ptr.col == linesBuffer.get(ptr.row).length() - 1) {
-            return new Pos(ptr.row + 1, 0);
+        if (col == linesBuffer.get(row).length() - 1) {
+            return Pos.pack(row + 1, 0);
         }
-        return new Pos(ptr.row, ptr.col + 1);
+        return Pos.pack(row, col + 1);
     }
 
     /**
      * 获取当前字符的位置
      */
-    public Pos currentPos() {
-        return ptr;
+    @Override
+    public long currentPos() {
+        return Pos.pack(row, col);
     }
 
     /**
      * 获取上一个字符的位置
      */
-    public Pos previousPos() {
-        if (ptr.row == 0 && ptr.col == 0) {
+    @Override
+    public long previousPos() {
+        if (row == 0 && col == 0) {
             throw new Error("previous position from beginning");
         }
-        if (ptr.col == 0) {
-            return new Pos(ptr.row - 1, linesBuffer.get(ptr.row - 1).length() - 1);
+        if (col == 0) {
+            return Pos.pack(row - 1, linesBuffer.get(row - 1).length() - 1);
         }
-        return new Pos(ptr.row, ptr.col - 1);
+        return Pos.pack(row, col - 1);
     }
 
     /**
      * 将指针指向下一个字符，并返回当前字符
      */
+    @Override
     public char nextChar() {
-        if (this.peeked.isPresent()) {
-            char ch = this.peeked.get();
-            this.peeked = Optional.empty();
-            this.ptr = ptrNext;
-            return ch;
+        char ch;
+        if (hasPeeked) {
+            ch = peeked;
+            hasPeeked = false;
         } else {
-            char ch = this.getNextChar();
-            this.ptr = ptrNext;
-            return ch;
+            ch = getNextChar();
         }
+        row = nextRow;
+        col = nextCol;
+        return ch;
     }
 
     private char getNextChar() {
         if (isEOF()) {
             return 0;
         }
-        char result = linesBuffer.get(ptrNext.row).charAt(ptrNext.col);
-        ptrNext = nextPos();
+        char result = linesBuffer.get(nextRow).charAt(nextCol);
+        long next = nextPos();
+        nextRow = Pos.rowOf(next);
+        nextCol = Pos.colOf(next);
         return result;
     }
 
     /**
      * 查看下一个字符，但不移动指针
      */
+    @Override
     public char peekChar() {
-        if (peeked.isPresent()) {
-            return peeked.get();
-        } else {
-            char ch = getNextChar();
-            this.peeked = Optional.of(ch);
-            return ch;
+        if (!hasPeeked) {
+            peeked = getNextChar();
+            hasPeeked = true;
         }
+        return peeked;
     }
 
-    public Boolean isEOF() {
-        return ptr.row >= linesBuffer.size();
+    @Override
+    public boolean isEOF() {
+        return row >= linesBuffer.size();
     }
 
     // Note: Is it evil to unread a buffer?
     public void unreadLast() {
-        ptr = previousPos();
+        long previous = previousPos();
+        row = Pos.rowOf(previous);
+        col = Pos.colOf(previous);
     }
 
 }
@@ -0,0 +1,500 @@
+package com.buaa.compilec0.tokenizer;
+
+import com.buaa.compilec0.error.ErrorCode;
+import com.buaa.compilec0.error.TokenizeError;
+
+import java.util.Arrays;
+
+/**
+ * 表驱动的词法分析器
+ * 字符先通过字符类表映射成字符类，再查状态转移表，直到没有转移为止，
+ * 停下来的状态决定了 Token 的类型。关键字用完美哈希识别。
+ * 字符串和字符常量因为有转义，单独处理。
+ *
+ * 输出的 Token 序列和 Tokenizer 完全一致（包括出错的位置），
+ * 唯一的区别是 Tokenizer 遇到不区分大小写的非 ASCII 字母（比如汉字）时会死循环，这里会报 InvalidInput
+ */
+public class TableTokenizer implements Lexer {
+
+    // 字符类
+    private static final int C_OTHER = 0;
+    private static final int C_LETTER = 1;
+    private static final int C_E = 2;
+    private static final int C_DIGIT = 3;
+    private static final int C_DOT = 4;
+    private static final int C_PLUS = 5;
+    private static final int C_MINUS = 6;
+    private static final int C_STAR = 7;
+    private static final int C_SLASH = 8;
+    private static final int C_EQ = 9;
+    private static final int C_BANG = 10;
+    private static final int C_LT = 11;
+    private static final int C_GT = 12;
+    private static final int C_L_PAREN = 13;
+    private static final int C_R_PAREN = 14;
+    private static final int C_L_BRACE = 15;
+    private static final int C_R_BRACE = 16;
+    private static final int C_COMMA = 17;
+    private static final int C_COLON = 18;
+    private static final int C_SEMICOLON = 19;
+    private static final int C_QUOTE = 20;
+    private static final int C_APOS = 21;
+    private static final int C_SPACE = 22;
+    private static final int CLASS_COUNT = 23;
+
+    // 状态
+    private static final int NONE = -1;
+    private static final int S_START = 0;
+    private static final int S_IDENT = 1;
+    private static final int S_UINT = 2;
+    private static final int S_DOT = 3;
+    private static final int S_FRACTION = 4;
+    private static final int S_EXP = 5;
+    private static final int S_EXP_SIGN = 6;
+    private static final int S_EXP_DIGITS = 7;
+    private static final int S_PLUS = 8;
+    private static final int S_MINUS = 9;
+    private static final int S_ARROW = 10;
+    private static final int S_MUL = 11;
+    private static final int S_DIV = 12;
+    private static final int S_COMMENT = 13;
+    private static final int S_ASSIGN = 14;
+    private static final int S_EQ = 15;
+    private static final int S_BANG = 16;
+    private static final int S_NEQ = 17;
+    private static final int S_LT = 18;
+    private static final int S_LE = 19;
+    private static final int S_GT = 20;
+    private static final int S_GE = 21;
+    private static final int S_L_PAREN = 22;
+    private static final int S_R_PAREN = 23;
+    private static final int S_L_BRACE = 24;
+    private static final int S_R_BRACE = 25;
+    private static final int S_COMMA = 26;
+    private static final int S_COLON = 27;
+    private static final int S_SEMICOLON = 28;
+    private static final int STATE_COUNT = 29;
+
+    // 状态停下来以后的动作
+    private static final byte A_OPERATOR = 0;
+    private static final byte A_IDENT = 1;
+    private static final byte A_UINT = 2;
+    private static final byte A_DOUBLE = 3;
+    private static final byte A_COMMENT = 4;
+    private static final byte A_INVALID_DOUBLE = 5;
+    private static final byte A_INVALID_OPERATOR = 6;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+    // 状态转移表，NEXT[state * CLASS_COUNT + charClass]
+    private static final byte[] NEXT = new byte[STATE_COUNT * CLASS_COUNT];
+    private static final byte[] ACTION = new byte[STATE_COUNT];
+    // 是否把字符收集起来用于生成值
+    private static final boolean[] COLLECT = new boolean[STATE_COUNT];
+    // 起始位置是否在第一个字符之后（和 Tokenizer 保持一致）
+    private static final boolean[] START_AFTER_FIRST = new boolean[STATE_COUNT];
+    private static final TokenType[] ACCEPT_TYPE = new TokenType[STATE_COUNT];
+    private static final Object[] ACCEPT_VALUE = new Object[STATE_COUNT];
+
+    // 关键字的完美哈希表，hash = (首字符 + 尾字符 * 14 + 长度) & 31
+    private static final String[] KEYWORDS = new String[32];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[32];
+
+    static {
+        for (int ch = 0; ch < 128; ch++) {
+            if (Character.isWhitespace(ch)) {
+                CHAR_CLASS[ch] = C_SPACE;
+            } else if (ch == 'e' || ch == 'E') {
+                CHAR_CLASS[ch] = C_E;
+            } else if (ch == '_' || (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')) {
+                CHAR_CLASS[ch] = C_LETTER;
+            } else if (ch >= '0' && ch <= '9') {
+                CHAR_CLASS[ch] = C_DIGIT;
+            }
+        }
+        CHAR_CLASS['.'] = C_DOT;
+        CHAR_CLASS['+'] = C_PLUS;
+        CHAR_CLASS['-'] = C_MINUS;
+        CHAR_CLASS['*'] = C_STAR;
+        CHAR_CLASS['/'] = C_SLASH;
+        CHAR_CLASS['='] = C_EQ;
+        CHAR_CLASS['!'] = C_BANG;
+        CHAR_CLASS['<'] = C_LT;
+        CHAR_CLASS['>'] = C_GT;
+        CHAR_CLASS['('] = C_L_PAREN;
+        CHAR_CLASS[')'] = C_R_PAREN;
+        CHAR_CLASS['{'] = C_L_BRACE;
+        CHAR_CLASS['}'] = C_R_BRACE;
+        CHAR_CLASS[','] = C_COMMA;
+        CHAR_CLASS[':'] = C_COLON;
+        CHAR_CLASS[';'] = C_SEMICOLON;
+        CHAR_CLASS['"'] = C_QUOTE;
+        CHAR_CLASS['\''] = C_APOS;
+
+        Arrays.fill(NEXT, (byte) NONE);
+
+        // 标识符和关键字：[_a-zA-Z][_a-zA-Z0-9]*
+        edge(S_START, S_IDENT, C_LETTER, C_E);
+        edge(S_IDENT, S_IDENT, C_LETTER, C_E, C_DIGIT);
+        ACTION[S_IDENT] = A_IDENT;
+
+        // 数字：digit+ ('.' digit+ ([eE] [+-]? digit+)?)?
+        edge(S_START, S_UINT, C_DIGIT);
+        edge(S_UINT, S_UINT, C_DIGIT);
+        edge(S_UINT, S_DOT, C_DOT);
+        edge(S_DOT, S_FRACTION, C_DIGIT);
+        edge(S_FRACTION, S_FRACTION, C_DIGIT);
+        edge(S_FRACTION, S_EXP, C_E);
+        edge(S_EXP, S_EXP_SIGN, C_PLUS, C_MINUS);
+        edge(S_EXP, S_EXP_DIGITS, C_DIGIT);
+        edge(S_EXP_SIGN, S_EXP_DIGITS, C_DIGIT);
+        edge(S_EXP_DIGITS, S_EXP_DIGITS, C_DIGIT);
+        ACTION[S_UINT] = A_UINT;
+        ACTION[S_DOT] = A_INVALID_DOUBLE;
+        ACTION[S_FRACTION] = A_DOUBLE;
+        ACTION[S_EXP] = A_INVALID_DOUBLE;
+        ACTION[S_EXP_SIGN] = A_INVALID_DOUBLE;
+        ACTION[S_EXP_DIGITS] = A_DOUBLE;
+        for (int state : new int[]{S_IDENT, S_UINT, S_DOT, S_FRACTION, S_EXP, S_EXP_SIGN, S_EXP_DIGITS}) {
+            COLLECT[state] = true;
+        }
+
+        // 运算符
+        operator(S_START, S_PLUS, C_PLUS, TokenType.PLUS, '+', false);
+        operator(S_START, S_MINUS, C_MINUS, TokenType.MINUS, '-', true);
+        operator(S_MINUS, S_ARROW, C_GT, TokenType.ARROW, "->", true);
+        operator(S_START, S_MUL, C_STAR, TokenType.MUL, '*', false);
+        operator(S_START, S_DIV, C_SLASH, TokenType.DIV, '/', true);
+        edge(S_DIV, S_COMMENT, C_SLASH);
+        ACTION[S_COMMENT] = A_COMMENT;
+        operator(S_START, S_ASSIGN, C_EQ, TokenType.ASSIGN, '=', true);
+        operator(S_ASSIGN, S_EQ, C_EQ, TokenType.EQ, "==", true);
+        edge(S_START, S_BANG, C_BANG);
+        START_AFTER_FIRST[S_BANG] = true;
+        ACTION[S_BANG] = A_INVALID_OPERATOR;
+        operator(S_BANG, S_NEQ, C_EQ, TokenType.NEQ, "!=", true);
+        operator(S_START, S_LT, C_LT, TokenType.LT, '<', true);
+        operator(S_LT, S_LE, C_EQ, TokenType.LE, "<=", true);
+        operator(S_START, S_GT, C_GT, TokenType.GT, '>', true);
+        operator(S_GT, S_GE, C_EQ, TokenType.GE, ">=", true);
+        operator(S_START, S_L_PAREN, C_L_PAREN, TokenType.L_PAREN, '(', false);
+        operator(S_START, S_R_PAREN, C_R_PAREN, TokenType.R_PAREN, ')', false);
+        operator(S_START, S_L_BRACE, C_L_BRACE, TokenType.L_BRACE, '{', false);
+        operator(S_START, S_R_BRACE, C_R_BRACE, TokenType.R_BRACE, '}', false);
+        operator(S_START, S_COMMA, C_COMMA, TokenType.COMMA, ',', false);
+        operator(S_START, S_COLON, C_COLON, TokenType.COLON, ':', false);
+        operator(S_START, S_SEMICOLON, C_SEMICOLON, TokenType.SEMICOLON, ';', false);
+
+        keyword("fn", TokenType.FN_KW);
+        keyword("let", TokenType.LET_KW);
+        keyword("const", TokenType.CONST_KW);
+        keyword("as", TokenType.AS_KW);
+        keyword("while", TokenType.WHILE_KW);
+        keyword("if", TokenType.IF_KW);
+        keyword("else", TokenType.ELSE_KW);
+        keyword("return", TokenType.RETURN_KW);
+        keyword("break", TokenType.BREAK_KW);
+        keyword("continue", TokenType.CONTINUE_KW);
+        keyword("int", TokenType.INT);
+        keyword("void", TokenType.VOID);
+        keyword("double", TokenType.DOUBLE);
+    }
+
+    private static void edge(int from, int to, int... classes) {
+        for (int c : classes) {
+            NEXT[from * CLASS_COUNT + c] = (byte) to;
+        }
+    }
+
+    private static void operator(int from, int to, int c, TokenType type, Object value, boolean startAfterFirst) {
+        edge(from, to, c);
+        ACTION[to] = A_OPERATOR;
+        ACCEPT_TYPE[to] = type;
+        ACCEPT_VALUE[to] = value;
+        START_AFTER_FIRST[to] = startAfterFirst;
+    }
+
+    private static int keywordHash(char first, char last, int length) {
+        return (first + last * 14 + length) & 31;
+    }
+
+    private static void keyword(String word, TokenType type) {
+        int hash = keywordHash(word.charAt(0), word.charAt(word.length() - 1), word.length());
+        if (KEYWORDS[hash] != null) {
+            throw new Error("keyword hash collision: " + word);
+        }
+        KEYWORDS[hash] = word;
+        KEYWORD_TYPES[hash] = type;
+    }
+
+    private final CharSource it;
+
+    // 收集标识符、数字和字符串的缓冲区，反复使用
+    private char[] buffer = new char[64];
+    private int length = 0;
+
+    private final Identifiers identifiers;
+
+    // 刚读出的 Token 的各个字段，由 emit 填写
+    private TokenType type;
+    private Object value;
+    private long bits;
+    private int id;
+    private long start;
+    private long end;
+
+    public TableTokenizer(CharSource it) {
+        this(it, new Identifiers());
+    }
+
+    public TableTokenizer(CharSource it, Identifiers identifiers) {
+        this.it = it;
+        this.identifiers = identifiers;
+    }
+
+    @Override
+    public Identifiers getIdentifiers() {
+        return identifiers;
+    }
+
+    @Override
+    public Token nextToken() throws TokenizeError {
+        lex();
+        return new Token(type, value, bits, id, start, end);
+    }
+
+    @Override
+    public void nextToken(TokenBuffer buffer, int slot) throws TokenizeError {
+        lex();
+        buffer.put(slot, type, value, bits, id, start, end);
+    }
+
+    private void emit(TokenType type, Object value, long bits, int id, long start) {
+        this.type = type;
+        this.value = value;
+        this.bits = bits;
+        this.id = id;
+        this.start = start;
+        this.end = it.currentPos();
+    }
+
+    private void lex() throws TokenizeError {
+        it.readAll();
+        while (true) {
+            // 跳过之前的所有空白字符
+            while (!it.isEOF() && isSpace(it.peekChar())) {
+                it.nextChar();
+            }
+            if (it.isEOF()) {
+                emit(TokenType.EOF, "EOF", 0, Identifiers.NONE, it.currentPos());
+                return;
+            }
+
+            char ch = it.peekChar();
+            int charClass = classOf(ch);
+            if (charClass == C_QUOTE) {
+                lexStringLiteral();
+                return;
+            } else if (charClass == C_APOS) {
+                lexChar();
+                return;
+            }
+
+            long firstPos = it.currentPos();
+            it.nextChar();
+            int state = NEXT[S_START * CLASS_COUNT + charClass];
+            if (state == NONE) {
+                throw new TokenizeError(ErrorCode.InvalidInput, firstPos);
+            }
+            long startPos = START_AFTER_FIRST[state] ? it.currentPos() : firstPos;
+            length = 0;
+            if (COLLECT[state]) {
+                append(ch);
+            }
+            while (true) {
+                ch = it.peekChar();
+                int next = NEXT[state * CLASS_COUNT + classOf(ch)];
+                if (next == NONE) {
+                    break;
+                }
+                it.nextChar();
+                if (COLLECT[next]) {
+                    append(ch);
+                }
+                state = next;
+            }
+
+            switch (ACTION[state]) {
+                case A_OPERATOR:
+                    emit(ACCEPT_TYPE[state], ACCEPT_VALUE[state], 0, Identifiers.NONE, startPos);
+                    return;
+                case A_IDENT:
+                    lexIdentOrKeyword(startPos);
+                    return;
+                case A_UINT:
+                    emit(TokenType.UINT_LITERAL, null, parseUInt(), Identifiers.NONE, startPos);
+                    return;
+                case A_DOUBLE:
+                    double number = Double.parseDouble(new String(buffer, 0, length));
+                    emit(TokenType.DOUBLE_LITERAL, null, Double.doubleToRawLongBits(number), Identifiers.NONE, startPos);
+                    return;
+                case A_COMMENT:
+                    skipLine();
+                    break;
+                case A_INVALID_DOUBLE:
+                    throw new TokenizeError(ErrorCode.InvalidDouble, it.currentPos());
+                default:
+                    throw new TokenizeError(ErrorCode.InvalidOperator, startPos);
+            }
+        }
+    }
+
+    private void lexIdentOrKeyword(long startPos) {
+        int hash = keywordHash(buffer[0], buffer[length - 1], length);
+        String keyword = KEYWORDS[hash];
+        if (keyword != null && isKeyword(keyword)) {
+            emit(KEYWORD_TYPES[hash], keyword, 0, Identifiers.NONE, startPos);
+            return;
+        }
+        // 直接用缓冲区查驻留表，出现过的标识符不再构造 String
+        int ident = identifiers.intern(buffer, 0, length);
+        emit(TokenType.IDENT, identifiers.nameOf(ident), 0, ident, startPos);
+    }
+
+    private boolean isKeyword(String keyword) {
+        if (keyword.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (keyword.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 十八位以内的 ASCII 数字直接累加，否则交给 Long.parseLong（溢出时抛出同样的异常）
+     */
+    private long parseUInt() {
+        if (length <= 18) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                char ch = buffer[i];
+                if (ch > '9') {
+                    return Long.parseLong(new String(buffer, 0, length));
+                }
+                value = value * 10 + (ch - '0');
+            }
+            return value;
+        }
+        return Long.parseLong(new String(buffer, 0, length));
+    }
+
+    private void lexChar() throws TokenizeError {
+        it.nextChar();  //'
+        long startPos = it.currentPos();
+        char ch = it.nextChar();
+        if (ch == '\'') {
+            throw new TokenizeError(ErrorCode.InvalidChar, startPos);
+        }
+        if (ch == '\\') {
+            ch = unescape(it.nextChar(), false);
+            if (ch == 0) {
+                throw new TokenizeError(ErrorCode.InvalidChar, startPos);
+            }
+        }
+        if (it.nextChar() != '\'') {
+            throw new TokenizeError(ErrorCode.InvalidChar, startPos);
+        }
+        emit(TokenType.UINT_LITERAL, null, ch, Identifiers.NONE, startPos);
+    }
+
+    private void lexStringLiteral() throws TokenizeError {
+        long startPos = it.currentPos();
+        it.nextChar();
+        length = 0;
+        while (true) {
+            char ch = it.peekChar();
+            if (ch == '\u0000') {
+                throw new TokenizeError(ErrorCode.InvalidString, startPos);
+            }
+            if (ch == '"') {
+                it.nextChar();
+                emit(TokenType.STRING_LITERAL, new String(buffer, 0, length), 0, Identifiers.NONE, startPos);
+                return;
+            }
+            if (ch == '\\') {
+                it.nextChar();
+                ch = unescape(it.peekChar(), true);
+                if (ch == 0) {
+                    break;
+                }
+                it.nextChar();
+                append(ch);
+            } else if (ch < 128 && ch != 0x0B && ch != 0x0C && ch != 0x0D) {
+                it.nextChar();
+                append(ch);
+            } else {
+                break;
+            }
+        }
+        throw new TokenizeError(ErrorCode.InvalidInput, startPos);
+    }
+
+    /**
+     * 转义字符，不合法的时候返回 0
+     * 字符常量里不支持 \\
+     */
+    private static char unescape(char ch, boolean allowBackslash) {
+        switch (ch) {
+            case '\'':
+                return '\'';
+            case '"':
+                return '"';
+            case '\\':
+                return allowBackslash ? '\\' : 0;
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            default:
+                return 0;
+        }
+    }
+
+    private void skipLine() {
+        char ch = it.peekChar();
+        while (ch != '\n' && !it.isEOF()) {
+            ch = it.nextChar();
+        }
+    }
+
+    private void append(char ch) {
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, length * 2);
+        }
+        buffer[length++] = ch;
+    }
+
+    private static boolean isSpace(char ch) {
+        return ch < 128 ? CHAR_CLASS[ch] == C_SPACE : Character.isWhitespace(ch);
+    }
+
+    /**
+     * 非 ASCII 字符按照 Tokenizer 的判断方式归类
+     */
+    private static int classOf(char ch) {
+        if (ch < 128) {
+            return CHAR_CLASS[ch];
+        }
+        if (Character.isDigit(ch)) {
+            return C_DIGIT;
+        }
+        if (Character.isAlphabetic(ch) && (Character.isUpperCase(ch) || Character.isLowerCase(ch))) {
+            return C_LETTER;
+        }
+        return C_OTHER;
+    }
+}
@@ -6,20 +6,46 @@ import java.util.Objects;
 
 public class Token {
     private TokenType tokenType;
+    // 数字常量不装箱，只保存 bits：整数就是它本身，浮点数是 Double.doubleToRawLongBits
+    // 需要的时候 getValue() 再装箱
     private Object value;
-    private Pos startPos;
-    private Pos endPos;
+    private long bits;
+    // 标识符在 Identifiers 中的编号，不是标识符时为 Identifiers.NONE
+    private int id = Identifiers.NONE;
+    // 用 Pos.pack 打包的起止位置，需要报错时才转成 Pos
+    private long startPos;
+    private long endPos;
+
+    public Token(TokenType tokenType, Object value, long startPos, long endPos) {
+        this.tokenType = tokenType;
+        this.value = value;
+        this.startPos = startPos;
+        this.endPos = endPos;
+        if (value instanceof Long) {
+            this.bits = (Long) value;
+        } else if (value instanceof Double) {
+            this.bits = Double.doubleToRawLongBits((Double) value);
+        }
+    }
 
-    public Token(TokenType tokenType, Object value, Pos startPos, Pos endPos) {
+    public Token(TokenType tokenType, Object value, long bits, int id, long startPos, long endPos) {
         this.tokenType = tokenType;
         this.value = value;
+        this.bits = bits;
+        this.id = id;
         this.startPos = startPos;
         this.endPos = endPos;
     }
 
+    public Token(TokenType tokenType, Object value, Pos startPos, Pos endPos) {
+        this(tokenType, value, startPos.pack(), endPos.pack());
+    }
+
     public Token(Token token) {
         this.tokenType = token.tokenType;
         this.value = token.value;
+        this.bits = token.bits;
+        this.id = token.id;
         this.startPos = token.startPos;
         this.endPos = token.endPos;
     }
@@ -31,13 +57,13 @@ public class Token {
         if (o == null || getClass() != o.getClass())
             return false;
         Token token = (Token) o;
-        return tokenType == token.tokenType && Objects.equals(value, token.value)
-                && Objects.equals(startPos, token.startPos) && Objects.equals(endPos, token.endPos);
+        return tokenType == token.tokenType && Objects.equals(getValue(), token.getValue())
+                && startPos == token.startPos && endPos == token.endPos;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(tokenType, value, startPos, endPos);
+        return Objects.hash(tokenType, getValue(), startPos, endPos);
     }
 
     public String getValueString() {
@@ -56,6 +82,13 @@ public class Token {
     }
 
     public Object getValue() {
+        if (value == null) {
+            if (tokenType == TokenType.UINT_LITERAL) {
+                value = bits;
+            } else if (tokenType == TokenType.DOUBLE_LITERAL) {
+                value = Double.longBitsToDouble(bits);
+            }
+        }
         return value;
     }
 
@@ -63,34 +96,62 @@ public class Token {
         this.value = value;
     }
 
-    public Pos getStartPos() {
+    /**
+     * 数字常量的 bits，整数就是它的值，浮点数是 IEEE 754 的表示
+     */
+    public long getBits() {
+        return bits;
+    }
+
+    /**
+     * 标识符的编号，不是标识符时为 Identifiers.NONE
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 打包后的起始位置
+     */
+    public long getStart() {
         return startPos;
     }
 
+    /**
+     * 打包后的结束位置
+     */
+    public long getEnd() {
+        return endPos;
+    }
+
+    public Pos getStartPos() {
+        return Pos.unpack(startPos);
+    }
+
     public void setStartPos(Pos startPos) {
-        this.startPos = startPos;
+        this.startPos = startPos.pack();
     }
 
     public Pos getEndPos() {
-        return endPos;
+        return Pos.unpack(endPos);
     }
 
     public void setEndPos(Pos endPos) {
-        this.endPos = endPos;
+        this.endPos = endPos.pack();
     }
 
     @Override
     public String toString() {
         var sb = new StringBuilder();
-        sb.append("Line: ").append(this.startPos.row).append(' ');
-        sb.append("Column: ").append(this.startPos.col).append(' ');
+        sb.append("Line: ").append(Pos.rowOf(this.startPos)).append(' ');
+        sb.append("Column: ").append(Pos.colOf(this.startPos)).append(' ');
         sb.append("Type: ").append(this.tokenType).append(' ');
-        sb.append("Value: ").append(this.value);
+        sb.append("Value: ").append(getValue());
         return sb.toString();
     }
 
     public String toStringAlt() {
-        return new StringBuilder().append("Token(").append(this.tokenType).append(", value: ").append(value)
-                .append("at: ").append(this.startPos).toString();
+        return new StringBuilder().append("Token(").append(this.tokenType).append(", value: ").append(getValue())
+                .append("at: ").append(getStartPos()).toString();
     }
 }
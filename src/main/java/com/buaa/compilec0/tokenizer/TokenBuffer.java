@@ -0,0 +1,94 @@
+package com.buaa.compilec0.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * 按列存储的 Token 缓冲区（struct of arrays）
+ * 每个槽位拆成几个基本类型数组：类型、数字 bits、标识符编号、起止位置，
+ * 只有字符串常量、运算符这类本来就是对象的值才放进 values
+ * 词法分析器直接往槽位里写，需要 Token 对象时再由 token(slot) 生成
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final byte[] types;
+    private final long[] bits;
+    private final int[] ids;
+    private final long[] starts;
+    private final long[] ends;
+    private final Object[] values;
+
+    // 已经生成过的 Token，槽位被重写时清掉
+    private final Token[] tokens;
+
+    public TokenBuffer(int capacity) {
+        this.types = new byte[capacity];
+        this.bits = new long[capacity];
+        this.ids = new int[capacity];
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.values = new Object[capacity];
+        this.tokens = new Token[capacity];
+        Arrays.fill(ids, Identifiers.NONE);
+    }
+
+    public void put(int slot, TokenType type, Object value, long bits, int id, long start, long end) {
+        this.types[slot] = (byte) type.ordinal();
+        this.values[slot] = value;
+        this.bits[slot] = bits;
+        this.ids[slot] = id;
+        this.starts[slot] = start;
+        this.ends[slot] = end;
+        this.tokens[slot] = null;
+    }
+
+    public void put(int slot, Token token) {
+        put(slot, token.getTokenType(), token.getValue(), token.getBits(), token.getId(), token.getStart(), token.getEnd());
+        this.tokens[slot] = token;
+    }
+
+    /**
+     * 把 from 槽位的内容复制到 to 槽位
+     */
+    public void copy(int from, int to) {
+        types[to] = types[from];
+        values[to] = values[from];
+        bits[to] = bits[from];
+        ids[to] = ids[from];
+        starts[to] = starts[from];
+        ends[to] = ends[from];
+        tokens[to] = tokens[from];
+    }
+
+    public TokenType type(int slot) {
+        return TYPES[types[slot]];
+    }
+
+    public long bits(int slot) {
+        return bits[slot];
+    }
+
+    public int id(int slot) {
+        return ids[slot];
+    }
+
+    public long start(int slot) {
+        return starts[slot];
+    }
+
+    public long end(int slot) {
+        return ends[slot];
+    }
+
+    /**
+     * 槽位对应的 Token 对象，第一次访问时才生成
+     */
+    public Token token(int slot) {
+        var token = tokens[slot];
+        if (token == null) {
+            token = new Token(type(slot), values[slot], bits[slot], ids[slot], starts[slot], ends[slot]);
+            tokens[slot] = token;
+        }
+        return token;
+    }
+}
@@ -0,0 +1,109 @@
+package com.buaa.compilec0.tokenizer;
+
+import com.buaa.compilec0.error.TokenizeError;
+
+/**
+ * 按需读取 Token 的流
+ * 用一个很小的环形 TokenBuffer 保存已经读出但还要用到的 Token：
+ * 1.向前偷看最多 MAX_LOOKAHEAD 个 Token
+ * 2.回退最多一步
+ * 消费过的 Token 会被覆盖，内存占用和文件大小无关
+ * 只看类型的时候用 peekType，不会生成 Token 对象
+ * 读到 EOF 之后再读，一直返回 EOF
+ */
+public class TokenStream {
+    private static final int CAPACITY = 4;
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * 最多可以偷看到的 Token，peek(0) 就是下一个 Token
+     * 要给 back() 留出一个位置
+     */
+    public static final int MAX_LOOKAHEAD = CAPACITY - 2;
+
+    private final Lexer lexer;
+    private final TokenBuffer ring = new TokenBuffer(CAPACITY);
+
+    /**
+     * 下一个要返回的 Token 的编号
+     */
+    private long position = 0;
+    /**
+     * 已经从词法分析器读出的 Token 数量
+     */
+    private long filled = 0;
+    private boolean reachedEOF = false;
+
+    public TokenStream(Lexer lexer) {
+        this.lexer = lexer;
+    }
+
+    /**
+     * 查看下一个 Token
+     */
+    public Token peek() throws TokenizeError {
+        return peek(0);
+    }
+
+    /**
+     * 查看后面第 k 个 Token，不移动指针
+     */
+    public Token peek(int k) throws TokenizeError {
+        return ring.token(slotOf(k));
+    }
+
+    /**
+     * 查看后面第 k 个 Token 的类型
+     */
+    public TokenType peekType(int k) throws TokenizeError {
+        return ring.type(slotOf(k));
+    }
+
+    /**
+     * 获取下一个 Token
+     */
+    public Token next() throws TokenizeError {
+        var token = ring.token(slotOf(0));
+        position++;
+        return token;
+    }
+
+    /**
+     * 本次编译的标识符驻留表
+     */
+    public Identifiers getIdentifiers() {
+        return lexer.getIdentifiers();
+    }
+
+    /**
+     * 回退一步，下一次 next() 重新返回上一个 Token
+     */
+    public void back() {
+        if (position == 0 || filled - position >= CAPACITY) {
+            throw new Error("cannot back over a discarded token");
+        }
+        position--;
+    }
+
+    private int slotOf(int k) throws TokenizeError {
+        if (k < 0 || k > MAX_LOOKAHEAD) {
+            throw new Error("lookahead out of range: " + k);
+        }
+        long index = position + k;
+        while (filled <= index) {
+            fill();
+        }
+        return (int) (index & MASK);
+    }
+
+    private void fill() throws TokenizeError {
+        int slot = (int) (filled & MASK);
+        if (reachedEOF) {
+            ring.copy((int) ((filled - 1) & MASK), slot);
+        } else {
+            lexer.nextToken(ring, slot);
+            reachedEOF = ring.type(slot) == TokenType.EOF;
+        }
+        filled++;
+    }
+}
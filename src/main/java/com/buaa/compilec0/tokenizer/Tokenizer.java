@@ -2,16 +2,21 @@ package com.buaa.compilec0.tokenizer;
 
 import com.buaa.compilec0.error.ErrorCode;
 import com.buaa.compilec0.error.TokenizeError;
-import com.buaa.compilec0.util.Pos;
 
-public class Tokenizer {
+public class Tokenizer implements Lexer {
 
-    private StringIter it;
+    private CharSource it;
+    private final Identifiers identifiers = new Identifiers();
 
-    public Tokenizer(StringIter it) {
+    public Tokenizer(CharSource it) {
         this.it = it;
     }
 
+    @Override
+    public Identifiers getIdentifiers() {
+        return identifiers;
+    }
+
     // 这里本来是想实现 Iterator<Token> 的，但是 Iterator 不允许抛异常，于是就这样了
 
     /**
@@ -20,6 +25,7 @@ public class Tokenizer {
      * @return
      * @throws TokenizeError 如果解析有异常则抛出
      */
+    @Override
     public Token nextToken() throws TokenizeError {
         it.readAll();
 
@@ -59,7 +65,7 @@ public class Tokenizer {
 
     private Token lexChar() throws TokenizeError {
         it.nextChar();  //'
-        Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+        long startPos = it.currentPos();
         char ch = it.nextChar(); //char
         var ascii = Integer.valueOf(ch);
         if (ch == '\'') {
@@ -91,7 +97,7 @@ public class Tokenizer {
 
     //分析是int还是double
     private Token lexUIntOrDouble() throws TokenizeError {
-        Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+        long startPos = it.currentPos();
         StringBuilder tmpString = new StringBuilder();
         char ch = it.peekChar();
         while (Character.isDigit(ch)) {
@@ -141,7 +147,7 @@ public class Tokenizer {
 
     //分析是关键字还是ident
     private Token lexIdentOrKeyword() throws TokenizeError {
-        Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+        long startPos = it.currentPos();
         StringBuilder tmpString = new StringBuilder();
         char ch = it.peekChar();
         while (Character.isDigit(ch) || Character.isUpperCase(ch) || Character.isLowerCase(ch) || ch == '_') {
@@ -150,7 +156,12 @@ public class Tokenizer {
             ch = it.peekChar();
         }
         String token = tmpString.toString();
-        return new Token(isIdentOrReserve(token), token, startPos, it.currentPos());
+        var tokenType = isIdentOrReserve(token);
+        if (tokenType == TokenType.IDENT) {
+            int id = identifiers.intern(token);
+            return new Token(tokenType, identifiers.nameOf(id), 0, id, startPos, it.currentPos());
+        }
+        return new Token(tokenType, token, startPos, it.currentPos());
     }
 
     /**
@@ -160,7 +171,7 @@ public class Tokenizer {
      * @throws TokenizeError
      */
     private Token lexStringLiteral() throws TokenizeError {
-        Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+        long startPos = it.currentPos();
         StringBuilder tmpString = new StringBuilder();
         it.nextChar();
         var isValid = true;
@@ -228,7 +239,7 @@ public class Tokenizer {
 
             case '-': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '>') {
                     it.nextChar();
                     return new Token(TokenType.ARROW, "->", startPos, it.currentPos());
@@ -241,7 +252,7 @@ public class Tokenizer {
 
             case '/': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '/') {
                     it.nextChar();
                     return new Token(TokenType.COMMENT, "//", startPos, it.currentPos());
@@ -251,7 +262,7 @@ public class Tokenizer {
 
             case '=': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '=') {
                     it.nextChar();
                     return new Token(TokenType.EQ, "==", startPos, it.currentPos());
@@ -261,7 +272,7 @@ public class Tokenizer {
 
             case '!': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '=') {
                     it.nextChar();
                     return new Token(TokenType.NEQ, "!=", startPos, it.currentPos());
@@ -272,7 +283,7 @@ public class Tokenizer {
 
             case '<': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '=') {
                     it.nextChar();
                     return new Token(TokenType.LE, "<=", startPos, it.currentPos());
@@ -282,7 +293,7 @@ public class Tokenizer {
 
             case '>': {
                 char ch = it.peekChar();
-                Pos startPos = new Pos(it.currentPos().row, it.currentPos().col);
+                long startPos = it.currentPos();
                 if (ch == '=') {
                     it.nextChar();
                     return new Token(TokenType.GE, ">=", startPos, it.currentPos());
@@ -9,6 +9,30 @@ public class Pos {
     public int row;
     public int col;
 
+    /**
+     * 把行号和列号打包成一个 long，高 32 位是行号，低 32 位是列号
+     * 词法分析的过程中只传递打包后的位置，报错时才生成 Pos 对象
+     */
+    public static long pack(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    public static int rowOf(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int colOf(long packed) {
+        return (int) packed;
+    }
+
+    public static Pos unpack(long packed) {
+        return new Pos(rowOf(packed), colOf(packed));
+    }
+
+    public long pack() {
+        return pack(row, col);
+    }
+
     public Pos nextCol() {
         return new Pos(row, col + 1);
     }
@@ -0,0 +1,237 @@
+package com.buaa.compilec0.vm;
+
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.assembler.Function;
+import com.buaa.compilec0.assembler.Global;
+import com.buaa.compilec0.assembler.GlobalType;
+import com.buaa.compilec0.assembler.InstructionBuffer;
+import com.buaa.compilec0.assembler.Operation;
+import com.buaa.compilec0.symbol.DataType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 虚拟机可以直接执行的模块
+ * 所有函数的指令拼接成一个数组，操作符是 Operation 的序号，操作数是 long，
+ * 每个函数记录自己在数组中的起始位置，跳转的偏移在函数内部不变
+ * 每个函数后面跟一条 panic 作为哨兵，记录在 ends 中
+ * 函数 0 是 _start，执行到它的哨兵表示程序正常结束
+ */
+public final class Program {
+    private static final byte[] MAGIC = {0x72, 0x30, 0x3b, 0x3e};
+    private static final int VERSION = 1;
+
+    // 按 o0 操作码查 Operation
+    private static final Operation[] BY_CODE = new Operation[256];
+
+    static {
+        for (Operation opt : Operation.values()) {
+            BY_CODE[opt.getCode() & 0xFF] = opt;
+        }
+    }
+
+    // 全局变量
+    final byte[][] globals;
+    final boolean[] constants;
+
+    // 函数
+    final int[] names;
+    final int[] retSlots;
+    final int[] paramSlots;
+    final int[] locSlots;
+    final int[] entries;
+    final int[] ends;
+
+    // 所有函数的指令
+    final byte[] code;
+    final long[] operands;
+
+    private Program(byte[][] globals, boolean[] constants,
+                   int[] names, int[] retSlots, int[] paramSlots, int[] locSlots, int[] entries, int[] ends,
+                   byte[] code, long[] operands) {
+        this.globals = globals;
+        this.constants = constants;
+        this.names = names;
+        this.retSlots = retSlots;
+        this.paramSlots = paramSlots;
+        this.locSlots = locSlots;
+        this.entries = entries;
+        this.ends = ends;
+        this.code = code;
+        this.operands = operands;
+    }
+
+    public int globalCount() {
+        return globals.length;
+    }
+
+    public int functionCount() {
+        return names.length;
+    }
+
+    /**
+     * 直接从 Assembler 构造，不经过 o0 编码
+     */
+    public static Program of(Assembler assembler) {
+        var globalList = new ArrayList<Global>(assembler.globals);
+        globalList.add(assembler.start);
+        var globals = new byte[globalList.size()][];
+        var constants = new boolean[globalList.size()];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = globalList.get(i).getData().clone();
+            constants[i] = globalList.get(i).getGlobalType() == GlobalType.CONSTANT;
+        }
+
+        var functions = new ArrayList<Function>();
+        functions.add(assembler.startFunction);
+        functions.addAll(assembler.functions);
+        int count = functions.size();
+        var builder = new Builder(count);
+        for (int i = 0; i < count; i++) {
+            var function = functions.get(i);
+            int ret = function.getReturnType() == DataType.INT || function.getReturnType() == DataType.DOUBLE ? 1 : 0;
+            builder.beginFunction(i, (int) function.getGlobalOffset(), ret,
+                    function.getParamSize(), function.getLocalVariableSize());
+            InstructionBuffer instructions = function.getInstructions();
+            for (int j = 0; j < instructions.size(); j++) {
+                builder.add(instructions.getOpcode(j), instructions.getOperand(j));
+            }
+            builder.endFunction(i);
+        }
+        return builder.build(globals, constants);
+    }
+
+    /**
+     * 读取 BinaryCode 生成的 o0 文件
+     */
+    public static Program read(Path path) throws IOException {
+        return read(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * 从 buffer 当前位置解码一个 o0 模块
+     */
+    public static Program read(ByteBuffer buffer) {
+        buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        try {
+            var magic = new byte[4];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new VmError("bad magic number");
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new VmError("unsupported o0 version");
+            }
+
+            // 每个全局量至少 5 字节：是否常量 1 字节，长度 4 字节
+            int globalCount = count(buffer, 5);
+            var globals = new byte[globalCount][];
+            var constants = new boolean[globalCount];
+            for (int i = 0; i < globalCount; i++) {
+                constants[i] = buffer.get() != 0;
+                globals[i] = new byte[count(buffer, 1)];
+                buffer.get(globals[i]);
+            }
+
+            // 每个函数至少 20 字节：name、ret、param、loc 和指令条数
+            int functionCount = count(buffer, 20);
+            var builder = new Builder(functionCount);
+            for (int i = 0; i < functionCount; i++) {
+                int name = buffer.getInt();
+                int ret = buffer.getInt();
+                int param = buffer.getInt();
+                int loc = buffer.getInt();
+                builder.beginFunction(i, name, ret, param, loc);
+                int bodyCount = count(buffer, 1);
+                for (int j = 0; j < bodyCount; j++) {
+                    var opt = BY_CODE[buffer.get() & 0xFF];
+                    if (opt == null) {
+                        throw new VmError("unknown opcode at function " + i + ", instruction " + j);
+                    }
+                    long x = 0;
+                    if (opt.getOperandSize() == 8) {
+                        x = buffer.getLong();
+                    } else if (opt.getOperandSize() == 4) {
+                        x = buffer.getInt();
+                    }
+                    builder.add(opt.ordinal(), x);
+                }
+                builder.endFunction(i);
+            }
+            return builder.build(globals, constants);
+        } catch (BufferUnderflowException e) {
+            throw new VmError("truncated o0 module");
+        }
+    }
+
+    /**
+     * 读一个数量，按每项至少 minBytes 字节算，剩下的字节装不下时就是模块被截断或者损坏了
+     * 在按这个数量分配数组之前检查，免得负数或者很大的数量直接分配失败
+     */
+    private static int count(ByteBuffer buffer, int minBytes) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / minBytes) {
+            throw new VmError("truncated o0 module");
+        }
+        return count;
+    }
+
+    /**
+     * 把函数逐个追加到一个指令数组里
+     */
+    private static final class Builder {
+        final int[] names;
+        final int[] retSlots;
+        final int[] paramSlots;
+        final int[] locSlots;
+        final int[] entries;
+        final int[] ends;
+        byte[] code = new byte[256];
+        long[] operands = new long[256];
+        int size = 0;
+
+        Builder(int functionCount) {
+            names = new int[functionCount];
+            retSlots = new int[functionCount];
+            paramSlots = new int[functionCount];
+            locSlots = new int[functionCount];
+            entries = new int[functionCount];
+            ends = new int[functionCount];
+        }
+
+        void beginFunction(int index, int name, int ret, int param, int loc) {
+            names[index] = name;
+            retSlots[index] = ret;
+            paramSlots[index] = param;
+            locSlots[index] = loc;
+            entries[index] = size;
+        }
+
+        void endFunction(int index) {
+            ends[index] = size;
+            add(Operation.panic.ordinal(), 0);
+        }
+
+        void add(int opcode, long x) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+                operands = Arrays.copyOf(operands, size * 2);
+            }
+            code[size] = (byte) opcode;
+            operands[size] = x;
+            size++;
+        }
+
+        Program build(byte[][] globals, boolean[] constants) {
+            return new Program(globals, constants, names, retSlots, paramSlots, locSlots, entries, ends,
+                    Arrays.copyOf(code, size), Arrays.copyOf(operands, size));
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.buaa.compilec0.vm;
+
+import com.buaa.compilec0.assembler.Operation;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 执行 Program 的解释器，指令集就是 assembler.Operation
+ * 栈是一个 long[]，每个槽 8 字节
+ * 地址是 64 位的字节地址，高 16 位区分所在的区域：
+ * 1.栈，偏移是 槽号 * 8
+ * 2.全局变量，所有全局变量按 8 字节对齐拼在一起
+ * 3.堆，alloc 只向后分配，free 不回收
+ * 调用信息（返回地址、参数和局部变量的位置）放在另外的数组里，不占用栈
+ */
+public class VirtualMachine {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int REGION_SHIFT = 48;
+    private static final long OFFSET_MASK = (1L << REGION_SHIFT) - 1;
+    private static final long STACK = 1L << REGION_SHIFT;
+    private static final long GLOBAL = 2L << REGION_SHIFT;
+    private static final long HEAP = 3L << REGION_SHIFT;
+
+    /**
+     * 默认的栈大小（槽数）
+     */
+    public static final int DEFAULT_STACK_SLOTS = 1 << 20;
+
+    private final Program program;
+    private final InputStream input;
+    private final OutputStream output;
+
+    private final long[] stack;
+    private int sp = 0;
+
+    private final byte[] globalMemory;
+    private final int[] globalOffsets;
+    private byte[] heap = new byte[0];
+    private int heapTop = 0;
+
+    // 全局变量编号 -> 以它为名字的函数，callname 用
+    private final int[] functionByName;
+
+    // 调用栈
+    private int[] frameFunctions = new int[64];
+    private int[] framePcs = new int[64];
+    private int[] frameArgs = new int[64];
+    private int[] frameLocals = new int[64];
+    private int depth = 0;
+
+    private long executed = 0;
+
+    // 输入缓冲
+    private final byte[] inputBuffer = new byte[8192];
+    private int inputPos = 0;
+    private int inputLimit = 0;
+
+    public VirtualMachine(Program program, InputStream input, OutputStream output) {
+        this(program, input, output, DEFAULT_STACK_SLOTS);
+    }
+
+    public VirtualMachine(Program program, InputStream input, OutputStream output, int stackSlots) {
+        this.program = program;
+        this.input = input;
+        this.output = new BufferedOutputStream(output, 1 << 16);
+        this.stack = new long[stackSlots];
+
+        int count = program.globals.length;
+        globalOffsets = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            globalOffsets[i] = size;
+            size += (program.globals[i].length + 7) & ~7;
+        }
+        globalMemory = new byte[size];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(program.globals[i], 0, globalMemory, globalOffsets[i], program.globals[i].length);
+        }
+
+        functionByName = new int[count];
+        Arrays.fill(functionByName, -1);
+        for (int i = 0; i < program.names.length; i++) {
+            int name = program.names[i];
+            if (name >= 0 && name < count && functionByName[name] < 0) {
+                functionByName[name] = i;
+            }
+        }
+    }
+
+    /**
+     * 执行到的指令条数
+     */
+    public long getExecutedInstructions() {
+        return executed;
+    }
+
+    /**
+     * 从 _start 开始执行，直到 _start 结束
+     */
+    public void run() {
+        try {
+            execute();
+        } finally {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void execute() {
+        final byte[] code = program.code;
+        final long[] operands = program.operands;
+        final long[] stack = this.stack;
+        final int startEnd = program.ends[0];
+
+        int fn = 0;
+        int pc = program.entries[0];
+        int argBase = 0;
+        int locBase = enterFrame(0, 0);
+        int sp = this.sp;
+        long executed = 0;
+
+        try {
+            while (true) {
+                int opcode = code[pc];
+                long x = operands[pc];
+                pc++;
+                executed++;
+                switch (OPERATIONS[opcode]) {
+                    case nop:
+                        break;
+                    case push:
+                        stack[sp++] = x;
+                        break;
+                    case pop:
+                        sp--;
+                        break;
+                    case popn:
+                        sp -= (int) x;
+                        break;
+                    case dup:
+                        stack[sp] = stack[sp - 1];
+                        sp++;
+                        break;
+                    case loca:
+                        stack[sp++] = STACK | ((locBase + x) << 3);
+                        break;
+                    case arga:
+                        stack[sp++] = STACK | ((argBase + x) << 3);
+                        break;
+                    case globa:
+                        stack[sp++] = GLOBAL | globalOffsets[(int) x];
+                        break;
+                    case load8:
+                        stack[sp - 1] = load(stack[sp - 1], 1);
+                        break;
+                    case load16:
+                        stack[sp - 1] = load(stack[sp - 1], 2);
+                        break;
+                    case load32:
+                        stack[sp - 1] = load(stack[sp - 1], 4);
+                        break;
+                    case load64: {
+                        long address = stack[sp - 1];
+                        if ((address & ~OFFSET_MASK) == STACK && (address & 7) == 0) {
+                            stack[sp - 1] = stack[(int) ((address & OFFSET_MASK) >>> 3)];
+                        } else {
+                            stack[sp - 1] = load(address, 8);
+                        }
+                        break;
+                    }
+                    case store8:
+                        sp -= 2;
+                        store(stack[sp], 1, stack[sp + 1]);
+                        break;
+                    case store16:
+                        sp -= 2;
+                        store(stack[sp], 2, stack[sp + 1]);
+                        break;
+                    case store32:
+                        sp -= 2;
+                        store(stack[sp], 4, stack[sp + 1]);
+                        break;
+                    case store64: {
+                        sp -= 2;
+                        long address = stack[sp];
+                        if ((address & ~OFFSET_MASK) == STACK && (address & 7) == 0) {
+                            stack[(int) ((address & OFFSET_MASK) >>> 3)] = stack[sp + 1];
+                        } else {
+                            store(address, 8, stack[sp + 1]);
+                        }
+                        break;
+                    }
+                    case alloc:
+                        stack[sp - 1] = alloc(stack[sp - 1]);
+                        break;
+                    case free:
+                        sp--;
+                        break;
+                    case stackalloc:
+                        Arrays.fill(stack, sp, sp + (int) x, 0);
+                        sp += (int) x;
+                        break;
+                    case addi:
+                        sp--;
+                        stack[sp - 1] += stack[sp];
+                        break;
+                    case subi:
+                        sp--;
+                        stack[sp - 1] -= stack[sp];
+                        break;
+                    case muli:
+                        sp--;
+                        stack[sp - 1] *= stack[sp];
+                        break;
+                    case divi:
+                        sp--;
+                        if (stack[sp] == 0) {
+                            throw new VmError("division by zero");
+                        }
+                        stack[sp - 1] /= stack[sp];
+                        break;
+                    case divu:
+                        sp--;
+                        if (stack[sp] == 0) {
+                            throw new VmError("division by zero");
+                        }
+                        stack[sp - 1] = Long.divideUnsigned(stack[sp - 1], stack[sp]);
+                        break;
+                    case addf:
+                        sp--;
+                        stack[sp - 1] = bits(real(stack[sp - 1]) + real(stack[sp]));
+                        break;
+                    case subf:
+                        sp--;
+                        stack[sp - 1] = bits(real(stack[sp - 1]) - real(stack[sp]));
+                        break;
+                    case mulf:
+                        sp--;
+                        stack[sp - 1] = bits(real(stack[sp - 1]) * real(stack[sp]));
+                        break;
+                    case divf:
+                        sp--;
+                        stack[sp - 1] = bits(real(stack[sp - 1]) / real(stack[sp]));
+                        break;
+                    case shl:
+                        sp--;
+                        stack[sp - 1] <<= stack[sp];
+                        break;
+                    case shr:
+                        sp--;
+                        stack[sp - 1] >>= stack[sp];
+                        break;
+                    case shrl:
+                        sp--;
+                        stack[sp - 1] >>>= stack[sp];
+                        break;
+                    case and:
+                        sp--;
+                        stack[sp - 1] &= stack[sp];
+                        break;
+                    case or:
+                        sp--;
+                        stack[sp - 1] |= stack[sp];
+                        break;
+                    case xor:
+                        sp--;
+                        stack[sp - 1] ^= stack[sp];
+                        break;
+                    case not:
+                        stack[sp - 1] = stack[sp - 1] == 0 ? 1 : 0;
+                        break;
+                    case cmpi:
+                        sp--;
+                        stack[sp - 1] = Long.compare(stack[sp - 1], stack[sp]);
+                        break;
+                    case cmpu:
+                        sp--;
+                        stack[sp - 1] = Integer.signum(Long.compareUnsigned(stack[sp - 1], stack[sp]));
+                        break;
+                    case cmpf: {
+                        sp--;
+                        double lhs = real(stack[sp - 1]);
+                        double rhs = real(stack[sp]);
+                        stack[sp - 1] = lhs < rhs ? -1 : (lhs > rhs ? 1 : 0);
+                        break;
+                    }
+                    case negi:
+                        stack[sp - 1] = -stack[sp - 1];
+                        break;
+                    case negf:
+                        stack[sp - 1] = bits(-real(stack[sp - 1]));
+                        break;
+                    case itof:
+                        stack[sp - 1] = bits((double) stack[sp - 1]);
+                        break;
+                    case ftoi:
+                        stack[sp - 1] = (long) real(stack[sp - 1]);
+                        break;
+                    case setlt:
+                        stack[sp - 1] = stack[sp - 1] < 0 ? 1 : 0;
+                        break;
+                    case setgt:
+                        stack[sp - 1] = stack[sp - 1] > 0 ? 1 : 0;
+                        break;
+                    case br:
+                        pc += (int) x;
+                        break;
+                    case brfalse:
+                        if (stack[--sp] == 0) {
+                            pc += (int) x;
+                        }
+                        break;
+                    case brtrue:
+                        if (stack[--sp] != 0) {
+                            pc += (int) x;
+                        }
+                        break;
+                    case callname:
+                        if (x < 0 || x >= functionByName.length || functionByName[(int) x] < 0) {
+                            throw new VmError("no function named by global " + x);
+                        }
+                        x = functionByName[(int) x];
+                        // fall through
+                    case call: {
+                        int callee = (int) x;
+                        if (callee < 0 || callee >= program.entries.length) {
+                            throw new VmError("no function " + callee);
+                        }
+                        pushFrame(fn, pc, argBase, locBase);
+                        fn = callee;
+                        argBase = sp - program.paramSlots[fn] - program.retSlots[fn];
+                        locBase = enterFrame(fn, sp);
+                        sp = locBase + program.locSlots[fn];
+                        pc = program.entries[fn];
+                        break;
+                    }
+                    case ret:
+                        if (depth == 0) {
+                            return;
+                        }
+                        sp = argBase + program.retSlots[fn];
+                        depth--;
+                        fn = frameFunctions[depth];
+                        pc = framePcs[depth];
+                        argBase = frameArgs[depth];
+                        locBase = frameLocals[depth];
+                        break;
+                    case scani:
+                        stack[sp++] = readLong();
+                        break;
+                    case scanc:
+                        stack[sp++] = readChar();
+                        break;
+                    case scanf:
+                        stack[sp++] = bits(readDouble());
+                        break;
+                    case printi:
+                        print(Long.toString(stack[--sp]));
+                        break;
+                    case printc:
+                        write((int) stack[--sp]);
+                        break;
+                    case printf:
+                        print(String.format(Locale.ROOT, "%.6f", real(stack[--sp])));
+                        break;
+                    case prints:
+                        printGlobal(stack[--sp]);
+                        break;
+                    case println:
+                        write('\n');
+                        break;
+                    case panic:
+                        if (pc - 1 == startEnd) {
+                            // _start 执行完毕
+                            return;
+                        }
+                        throw new VmError("panic in function " + fn);
+                    default:
+                        throw new VmError("unknown instruction " + opcode);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            if (sp >= stack.length || sp < 0) {
+                throw new VmError("stack overflow");
+            }
+            throw new VmError("invalid memory access");
+        } finally {
+            this.sp = sp;
+            this.executed += executed;
+        }
+    }
+
+    /**
+     * 给函数的局部变量清零，返回局部变量的起始槽号
+     */
+    private int enterFrame(int fn, int base) {
+        int end = base + program.locSlots[fn];
+        if (end > stack.length) {
+            throw new VmError("stack overflow");
+        }
+        Arrays.fill(stack, base, end, 0);
+        return base;
+    }
+
+    private void pushFrame(int fn, int pc, int argBase, int locBase) {
+        if (depth == frameFunctions.length) {
+            int length = depth * 2;
+            frameFunctions = Arrays.copyOf(frameFunctions, length);
+            framePcs = Arrays.copyOf(framePcs, length);
+            frameArgs = Arrays.copyOf(frameArgs, length);
+            frameLocals = Arrays.copyOf(frameLocals, length);
+        }
+        frameFunctions[depth] = fn;
+        framePcs[depth] = pc;
+        frameArgs[depth] = argBase;
+        frameLocals[depth] = locBase;
+        depth++;
+    }
+
+    private static double real(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    private long load(long address, int width) {
+        long offset = address & OFFSET_MASK;
+        long region = address & ~OFFSET_MASK;
+        if (region == STACK) {
+            checkAligned(offset, width);
+            long slot = stack[(int) (offset >>> 3)];
+            return truncate(slot >>> ((offset & 7) << 3), width);
+        }
+        byte[] memory = memoryOf(region, offset, width);
+        if (width == 8) {
+            return (long) LONGS.get(memory, (int) offset);
+        }
+        long value = 0;
+        for (int i = width - 1; i >= 0; i--) {
+            value = (value << 8) | (memory[(int) offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private void store(long address, int width, long value) {
+        long offset = address & OFFSET_MASK;
+        long region = address & ~OFFSET_MASK;
+        if (region == STACK) {
+            checkAligned(offset, width);
+            int index = (int) (offset >>> 3);
+            int shift = (int) ((offset & 7) << 3);
+            long mask = width == 8 ? -1L : ((1L << (width << 3)) - 1) << shift;
+            stack[index] = (stack[index] & ~mask) | ((value << shift) & mask);
+            return;
+        }
+        byte[] memory = memoryOf(region, offset, width);
+        if (width == 8) {
+            LONGS.set(memory, (int) offset, value);
+            return;
+        }
+        for (int i = 0; i < width; i++) {
+            memory[(int) offset + i] = (byte) (value >>> (i << 3));
+        }
+    }
+
+    private static long truncate(long value, int width) {
+        return width == 8 ? value : value & ((1L << (width << 3)) - 1);
+    }
+
+    private static void checkAligned(long offset, int width) {
+        if ((offset & (width - 1)) != 0) {
+            throw new VmError("unaligned access");
+        }
+    }
+
+    private byte[] memoryOf(long region, long offset, int width) {
+        checkAligned(offset, width);
+        byte[] memory;
+        long limit;
+        if (region == GLOBAL) {
+            memory = globalMemory;
+            limit = memory.length;
+        } else if (region == HEAP) {
+            memory = heap;
+            limit = heapTop;
+        } else {
+            throw new VmError("invalid address " + Long.toHexString(region | offset));
+        }
+        if (offset + width > limit) {
+            throw new VmError("invalid address " + Long.toHexString(region | offset));
+        }
+        return memory;
+    }
+
+    private long alloc(long size) {
+        if (size < 0 || heapTop + size > Integer.MAX_VALUE - 8) {
+            throw new VmError("out of memory");
+        }
+        int start = heapTop;
+        heapTop = (int) ((heapTop + size + 7) & ~7);
+        if (heapTop > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(heapTop, heap.length * 2));
+        }
+        return HEAP | start;
+    }
+
+    private void printGlobal(long index) {
+        if (index < 0 || index >= program.globals.length) {
+            throw new VmError("no global " + index);
+        }
+        try {
+            output.write(program.globals[(int) index]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void print(String text) {
+        try {
+            output.write(text.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(int ch) {
+        try {
+            output.write(ch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int peekInput() {
+        if (inputPos == inputLimit) {
+            try {
+                int n = input.read(inputBuffer);
+                if (n <= 0) {
+                    return -1;
+                }
+                inputPos = 0;
+                inputLimit = n;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return inputBuffer[inputPos] & 0xFF;
+    }
+
+    private int readChar() {
+        int ch = peekInput();
+        if (ch < 0) {
+            throw new VmError("unexpected end of input");
+        }
+        inputPos++;
+        return ch;
+    }
+
+    /**
+     * 跳过空白，读出下一个不含空白的词
+     */
+    private String readWord() {
+        int ch = peekInput();
+        while (ch >= 0 && Character.isWhitespace(ch)) {
+            inputPos++;
+            ch = peekInput();
+        }
+        var word = new StringBuilder();
+        while (ch >= 0 && !Character.isWhitespace(ch)) {
+            word.append((char) ch);
+            inputPos++;
+            ch = peekInput();
+        }
+        if (word.length() == 0) {
+            throw new VmError("unexpected end of input");
+        }
+        return word.toString();
+    }
+
+    private long readLong() {
+        var word = readWord();
+        try {
+            return Long.parseLong(word);
+        } catch (NumberFormatException e) {
+            throw new VmError("invalid integer input: " + word);
+        }
+    }
+
+    private double readDouble() {
+        var word = readWord();
+        try {
+            return Double.parseDouble(word);
+        } catch (NumberFormatException e) {
+            throw new VmError("invalid double input: " + word);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.buaa.compilec0.vm;
+
+/**
+ * 虚拟机运行时的错误，比如 panic、除零、栈溢出、非法地址
+ */
+public class VmError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public VmError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package com.buaa.compilec0;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CommandLineTest {
+
+    @Test
+    void fastPathAgreesWithArgparse4j() {
+        String[][] cases = {
+                {"in.c0", "-o", "out.o0"},
+                {"-", "-o", "-", "-q"},
+                {"-O2", "--emit=text", "--time-phases", "in.c0", "-o", "out.txt", "-v"},
+                {"--batch", "tests", "out", "-j", "4", "--cache", "cache", "-O1"},
+                {"--daemon", "7411", "-O2"},
+        };
+        for (String[] args : cases) {
+            var fast = CommandLine.parseFast(args);
+            assertNotNull(fast, String.join(" ", args));
+            assertEquals(describe(CommandLineParser.parse(args)), describe(fast), String.join(" ", args));
+        }
+    }
+
+    @Test
+    void otherSpellingsGoToArgparse4j() {
+        assertNull(CommandLine.parseFast(new String[]{"in.c0", "-o", "out.o0", "-O", "2"}));
+        assertNull(CommandLine.parseFast(new String[]{"in.c0", "-o", "out.o0", "--time"}));
+        assertNull(CommandLine.parseFast(new String[]{"--batch", "tests", "-j", "0"}));
+
+        var commandLine = CommandLineParser.parse(new String[]{"in.c0", "-o", "out.o0", "-O", "2", "--emit", "text", "--time"});
+        assertEquals(2, commandLine.optimizationLevel);
+        assertEquals("-O2 --emit=text", commandLine.compileOptions().toString());
+        assertEquals(true, commandLine.timePhases);
+    }
+
+    private static String describe(CommandLine commandLine) {
+        return commandLine.mode + " " + commandLine.operands + " -o " + commandLine.output + " " + commandLine.verbosity
+                + " " + commandLine.compileOptions() + " time=" + commandLine.timePhases
+                + " jobs=" + commandLine.jobs + " cache=" + commandLine.cacheDirectory;
+    }
+}
@@ -0,0 +1,62 @@
+package com.buaa.compilec0;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 原生可执行文件和 jar 对同一组程序的输出必须逐字节相同
+ * 由 native profile（mvn -P lean,native verify）在 integration-test 阶段运行，两个文件的路径从系统属性传进来
+ */
+class NativeImageIT {
+
+    @Test
+    void nativeOutputMatchesJar() throws Exception {
+        var jar = Path.of(System.getProperty("compilec0.jar"));
+        var nativeImage = Path.of(System.getProperty("compilec0.native"));
+        assertTrue(Files.isRegularFile(jar), "missing " + jar);
+        assertTrue(Files.isExecutable(nativeImage), "missing " + nativeImage);
+
+        var corpus = corpus();
+        assertFalse(corpus.isEmpty());
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var work = Files.createTempDirectory("compilec0-native");
+        for (Path input : corpus) {
+            var fromJar = work.resolve("jar.o0");
+            var fromNative = work.resolve("native.o0");
+            compile(List.of(java, "-jar", jar.toString()), input, fromJar);
+            compile(List.of(nativeImage.toString()), input, fromNative);
+            assertArrayEquals(Files.readAllBytes(fromJar), Files.readAllBytes(fromNative), input.toString());
+        }
+    }
+
+    private static List<Path> corpus() throws IOException {
+        try (var files = Files.list(Path.of("src", "test", "resources", "c0"))) {
+            return files.filter(path -> path.toString().endsWith(".c0")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void compile(List<String> command, Path input, Path output) throws Exception {
+        var arguments = new ArrayList<>(command);
+        arguments.add(input.toString());
+        arguments.add("-o");
+        arguments.add(output.toString());
+        var exitCode = new ProcessBuilder(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File(output + ".log")))
+                .start()
+                .waitFor();
+        assertEquals(0, exitCode, String.join(" ", arguments) + " exited with " + exitCode);
+    }
+}
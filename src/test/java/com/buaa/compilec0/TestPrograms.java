@@ -0,0 +1,44 @@
+package com.buaa.compilec0;
+
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.driver.CompileOptions;
+import com.buaa.compilec0.driver.Compiler;
+import com.buaa.compilec0.driver.PhaseTimes;
+import com.buaa.compilec0.error.CompileError;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.vm.Program;
+import com.buaa.compilec0.vm.VirtualMachine;
+import com.buaa.compilec0.vm.VmError;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 各个测试共用的：把一段 c0 源码按某个优化级别编译，在虚拟机上运行并取出输出
+ */
+public final class TestPrograms {
+
+    private TestPrograms() {
+    }
+
+    public static Assembler assemble(String source, int optimizationLevel) throws CompileError {
+        var bytes = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        var charSource = new ChannelCharSource(Channels.newChannel(bytes), StandardCharsets.UTF_8);
+        return Compiler.assemble(charSource, new CompileOptions(optimizationLevel, CompileOptions.Emit.O0), PhaseTimes.NONE);
+    }
+
+    /**
+     * 没有输入；运行出错时在输出后面接上错误信息，这样比较输出时也比较了出错的行为
+     */
+    public static String run(Assembler assembler) {
+        var output = new ByteArrayOutputStream();
+        try {
+            new VirtualMachine(Program.of(assembler), new ByteArrayInputStream(new byte[0]), output).run();
+        } catch (VmError e) {
+            return output.toString(StandardCharsets.UTF_8) + e.getMessage();
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,51 @@
+package com.buaa.compilec0.analyser;
+
+import com.buaa.compilec0.assembler.Operation;
+import org.junit.jupiter.api.Test;
+
+import static com.buaa.compilec0.TestPrograms.assemble;
+import static com.buaa.compilec0.TestPrograms.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConstantFolderTest {
+
+    @Test
+    void foldsExpressionToOnePush() throws Exception {
+        var source = "const k: int = 1 + 2 * 3;\n"
+                + "fn main() -> void {\n putint(k * 2 - -1);\n}\n";
+        var instructions = assemble(source, 1).functions.get(0).getInstructions();
+        assertEquals(Operation.push, instructions.getOperation(0));
+        assertEquals(15, instructions.getOperand(0));
+        assertEquals(Operation.printi, instructions.getOperation(1));
+    }
+
+    @Test
+    void foldsGlobalInitializer() throws Exception {
+        var source = "let g: int = -(2 * 3) + 1;\n"
+                + "fn main() -> void {\n putint(g);\n}\n";
+        var start = assemble(source, 1).startFunction.getInstructions();
+        assertEquals(Operation.globa, start.getOperation(0));
+        assertEquals(Operation.push, start.getOperation(1));
+        assertEquals(-5, start.getOperand(1));
+        assertEquals(Operation.store64, start.getOperation(2));
+    }
+
+    @Test
+    void sameOutputAsRuntime() throws Exception {
+        var source = "const half: double = 1.0 / 2.0;\n"
+                + "fn main() -> void {\n"
+                + " putint(9223372036854775807 + 1); putln();\n"
+                + " putint(-7 / 2); putln();\n"
+                + " putint(-3.99 as int); putln();\n"
+                + " putdouble(7 as double * half); putln();\n"
+                + " if 2.0 >= 3.0 { putint(1); } else { putint(0); }\n"
+                + " if 5 != 4 { putint(1); }\n"
+                + " putln();\n"
+                + " putint(1 / (3 - 3));\n"
+                + "}\n";
+        var folded = assemble(source, 1);
+        assertTrue(folded.functions.get(0).getInstructions().size() < assemble(source, 0).functions.get(0).getInstructions().size());
+        assertEquals(run(assemble(source, 0)), run(folded));
+    }
+}
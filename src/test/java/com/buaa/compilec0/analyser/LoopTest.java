@@ -0,0 +1,28 @@
+package com.buaa.compilec0.analyser;
+
+import org.junit.jupiter.api.Test;
+
+import static com.buaa.compilec0.TestPrograms.assemble;
+import static com.buaa.compilec0.TestPrograms.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LoopTest {
+
+    @Test
+    void breakAndContinueTargetInnermostLoop() throws Exception {
+        var source = "fn main() -> void {\n"
+                + " let i: int = 0;\n let j: int = 0;\n"
+                + " while i < 5 {\n"
+                + "  j = 0;\n"
+                + "  while j < 5 { j = j + 1; if j == 2 { continue; } if j == 4 { break; } putint(j); }\n"
+                + "  i = i + 1;\n"
+                + "  if i == 3 { break; }\n"
+                + "  putint(0);\n"
+                + "  continue;\n"
+                + "  putint(9);\n"
+                + " }\n"
+                + " putint(i);\n"
+                + "}\n";
+        assertEquals("130130133", run(assemble(source, 0)));
+    }
+}
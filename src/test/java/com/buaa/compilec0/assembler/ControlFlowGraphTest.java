@@ -0,0 +1,62 @@
+package com.buaa.compilec0.assembler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.buaa.compilec0.TestPrograms.assemble;
+import static com.buaa.compilec0.TestPrograms.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ControlFlowGraphTest {
+    private static final String LOOP = "fn main() -> void {\n"
+            + " let i: int = 0;\n"
+            + " while i < 6 { i = i + 1; if i == 2 { continue; } if i == 5 { break; } putint(i); }\n"
+            + "}\n";
+
+    @Test
+    void splitsAtBranchesAndTargets() throws Exception {
+        var graph = ControlFlowGraph.of(assemble(LOOP, 0).functions.get(0));
+        var entry = graph.getEntry();
+        assertNull(entry.getTerminator());
+        var condition = entry.getNext();
+        assertEquals(Operation.brtrue, condition.getTerminator());
+        assertEquals(List.of(condition.getTarget(), condition.getNext()), condition.successors());
+        // 循环体最后跳回条件
+        for (var block : graph.getBlocks()) {
+            if (block.getTerminator() == Operation.br && block.getTarget().getLabel() < block.getLabel()) {
+                assertSame(condition, block.getTarget());
+            }
+        }
+        var last = graph.getBlocks().get(graph.getBlocks().size() - 1);
+        assertEquals(Operation.ret, last.getTerminator());
+    }
+
+    @Test
+    void linearizeRecomputesOffsets() throws Exception {
+        var assembler = assemble(LOOP, 0);
+        var expected = run(assembler);
+        var function = assembler.functions.get(0);
+        var graph = ControlFlowGraph.of(function);
+        // 每个块前面插两条没有作用的指令，所有跳转的偏移都要变
+        for (var block : graph.getBlocks()) {
+            var instructions = new InstructionBuffer();
+            instructions.add(Operation.nop);
+            instructions.add(Operation.nop);
+            var old = block.getInstructions();
+            for (int i = 0; i < old.size(); i++) {
+                instructions.add(old.getOperation(i), old.getOperand(i));
+            }
+            old.truncate(0);
+            for (int i = 0; i < instructions.size(); i++) {
+                old.add(instructions.getOperation(i), instructions.getOperand(i));
+            }
+        }
+        int size = graph.linearize();
+        assertEquals(size, function.getInstructions().size());
+        assertEquals(expected, run(assembler));
+        assertEquals("134", expected);
+    }
+}
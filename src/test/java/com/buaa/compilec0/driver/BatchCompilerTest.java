@@ -0,0 +1,71 @@
+package com.buaa.compilec0.driver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchCompilerTest {
+
+    @Test
+    void errorInOneFileDoesNotStopTheBatch(@TempDir Path dir) throws Exception {
+        var sources = Files.createDirectories(dir.resolve("src"));
+        Files.writeString(sources.resolve("a.c0"), "fn main() -> void {\n let x: int\n}\n", StandardCharsets.UTF_8);
+        Files.writeString(sources.resolve("b.c0"), "fn main() -> void {\n putint(1);\n}\n", StandardCharsets.UTF_8);
+        var out = dir.resolve("out");
+
+        var results = new BatchCompiler().compile(CompileJob.fromDirectory(sources, out));
+
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).isSuccess());
+        assertNotNull(results.get(0).getError());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(Files.exists(out.resolve("a.o0")));
+        assertTrue(Files.size(out.resolve("b.o0")) > 0);
+    }
+
+    @Test
+    void parallelOutputMatchesSequential(@TempDir Path dir) throws Exception {
+        var sources = Files.createDirectories(dir.resolve("src"));
+        for (int i = 0; i < 16; i++) {
+            var source = "let g: int = " + i + ";\nfn main() -> void {\n putint(g * " + i + ");\n putstr(\"" + i + "\");\n}\n";
+            Files.writeString(sources.resolve("p" + i + ".c0"), source, StandardCharsets.UTF_8);
+        }
+        Files.writeString(sources.resolve("p3.c0"), "fn main( {\n}\n", StandardCharsets.UTF_8);
+
+        var sequential = new BatchCompiler(1).compile(CompileJob.fromDirectory(sources, dir.resolve("a")));
+        var parallel = new BatchCompiler(4).compile(CompileJob.fromDirectory(sources, dir.resolve("b")));
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            var expected = sequential.get(i);
+            var actual = parallel.get(i);
+            assertEquals(expected.getJob().getInput(), actual.getJob().getInput());
+            assertEquals(expected.isSuccess(), actual.isSuccess());
+            if (expected.isSuccess()) {
+                assertArrayEquals(Files.readAllBytes(expected.getJob().getOutput()), Files.readAllBytes(actual.getJob().getOutput()));
+            }
+        }
+        assertEquals(1, parallel.stream().filter(result -> !result.isSuccess()).count());
+    }
+
+    @Test
+    void readsManifest(@TempDir Path dir) throws Exception {
+        var manifest = dir.resolve("jobs.txt");
+        Files.writeString(manifest, "# comment\n\nin/a.c0   out/a.o0\n", StandardCharsets.UTF_8);
+
+        var jobs = CompileJob.fromManifest(manifest);
+
+        assertEquals(1, jobs.size());
+        assertEquals(Path.of("in/a.c0"), jobs.get(0).getInput());
+        assertEquals(Path.of("out/a.o0"), jobs.get(0).getOutput());
+    }
+}
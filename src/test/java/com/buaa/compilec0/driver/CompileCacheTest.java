@@ -0,0 +1,114 @@
+package com.buaa.compilec0.driver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompileCacheTest {
+
+    @Test
+    void hitReturnsTheSameImage(@TempDir Path dir) throws Exception {
+        var source = "fn main() -> void {\n putint(1 + 2);\n}\n".getBytes(StandardCharsets.UTF_8);
+        var cache = new CompileCache(dir);
+
+        var first = cache.compile(source, CompileOptions.DEFAULT);
+        var second = cache.compile(source, CompileOptions.DEFAULT);
+
+        assertArrayEquals(Compiler.compile(source), first);
+        assertArrayEquals(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertNotEquals(cache.key(source, ""), cache.key(source, "-O1"));
+    }
+
+    @Test
+    void corruptEntryIsAMiss(@TempDir Path dir) throws Exception {
+        var source = "fn main() -> void {\n}\n".getBytes(StandardCharsets.UTF_8);
+        var cache = new CompileCache(dir);
+        var expected = cache.compile(source, CompileOptions.DEFAULT);
+        try (Stream<Path> files = Files.walk(dir)) {
+            var entry = files.filter(path -> path.toString().endsWith(".o0")).findFirst().orElseThrow();
+            Files.write(entry, new byte[]{1, 2});
+        }
+
+        assertArrayEquals(expected, cache.compile(source, CompileOptions.DEFAULT));
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed(@TempDir Path dir) throws Exception {
+        var size = Compiler.compile(program(0)).length;
+        // 只放得下三个条目
+        var cache = new CompileCache(dir, size * 3L + size / 2);
+        for (int i = 0; i < 3; i++) {
+            cache.compile(program(i), CompileOptions.DEFAULT);
+            Thread.sleep(20);
+        }
+        // 用一下最早的条目，让第二个变成最久没用的
+        cache.compile(program(0), CompileOptions.DEFAULT);
+        Thread.sleep(20);
+        cache.compile(program(3), CompileOptions.DEFAULT);
+
+        assertTrue(cache.getEvictions() > 0);
+        var before = cache.getHits();
+        cache.compile(program(0), CompileOptions.DEFAULT);
+        assertEquals(before + 1, cache.getHits());
+        var misses = cache.getMisses();
+        cache.compile(program(1), CompileOptions.DEFAULT);
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    void rebuiltCompilerMisses(@TempDir Path dir) throws Exception {
+        var source = program(0);
+        var before = new CompileCache(dir, CompileCache.DEFAULT_MAX_BYTES, "build 1");
+        before.compile(source, CompileOptions.DEFAULT);
+        before.compile(source, CompileOptions.DEFAULT);
+        assertEquals(1, before.getHits());
+
+        var after = new CompileCache(dir, CompileCache.DEFAULT_MAX_BYTES, "build 2");
+        after.compile(source, CompileOptions.DEFAULT);
+        assertEquals(0, after.getHits());
+        assertEquals(1, after.getMisses());
+    }
+
+    @Test
+    void disabledWithoutFingerprint(@TempDir Path dir) throws Exception {
+        var cache = new CompileCache(dir, CompileCache.DEFAULT_MAX_BYTES, null);
+        assertFalse(cache.isEnabled());
+        assertArrayEquals(Compiler.compile(program(0)), cache.compile(program(0), CompileOptions.DEFAULT));
+        assertEquals(0, cache.getStores());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void locatesJarInsideFatJar(@TempDir Path dir) throws Exception {
+        var jar = Files.createFile(dir.resolve("compilec0.jar"));
+        var nested = new URL("jar:" + jar.toUri() + "!/BOOT-INF/classes!/");
+        assertEquals(jar, CompileCache.locate(nested));
+        assertEquals(jar, CompileCache.locate(jar.toUri().toURL()));
+        assertNull(CompileCache.locate(dir.resolve("missing.jar").toUri().toURL()));
+        assertNotNull(CompileCache.fingerprint(jar));
+        assertNull(CompileCache.fingerprint(null));
+    }
+
+    private static byte[] program(int n) {
+        return ("fn main() -> void {\n putint(" + (1000 + n) + ");\n}\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package com.buaa.compilec0.driver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompileDaemonTest {
+
+    @Test
+    void servesConcurrentClients(@TempDir Path tokens) throws Exception {
+        var daemon = new CompileDaemon(0, CompileOptions.DEFAULT, tokens);
+        var server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        var source = getClass().getResourceAsStream("/c0/fib.c0").readAllBytes();
+        var expected = Compiler.compile(source);
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var futures = new ArrayList<Future<byte[]>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(pool.submit((Callable<byte[]>) () -> {
+                    try (var client = new DaemonClient(daemon.getPort(), tokens)) {
+                        byte[] last = null;
+                        for (int j = 0; j < 5; j++) {
+                            var response = client.compileSource(source);
+                            assertEquals(DaemonProtocol.OK, response.getKind());
+                            last = response.getPayload();
+                        }
+                        return last;
+                    }
+                }));
+            }
+            for (Future<byte[]> future : futures) {
+                assertArrayEquals(expected, future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        try (var client = new DaemonClient(daemon.getPort(), tokens)) {
+            var response = client.compileSource("fn main() -> void {\n x = 1;\n}\n".getBytes());
+            assertEquals(DaemonProtocol.COMPILE_ERROR, response.getKind());
+            assertTrue(new String(response.getPayload(), StandardCharsets.UTF_8).contains("NotDeclared"));
+            assertTrue(client.stats().startsWith("requests 21, failed 1"));
+            client.shutdown();
+        }
+        server.join(10_000);
+        assertFalse(server.isAlive());
+    }
+
+    @Test
+    void shutdownDoesNotWaitForIdleClients(@TempDir Path tokens) throws Exception {
+        var daemon = new CompileDaemon(0, CompileOptions.DEFAULT, tokens);
+        var server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        try (var idle = new DaemonClient(daemon.getPort(), tokens)) {
+            assertTrue(idle.stats().startsWith("requests 0"));
+            long start = System.nanoTime();
+            try (var client = new DaemonClient(daemon.getPort(), tokens)) {
+                client.shutdown();
+            }
+            server.join(10_000);
+            assertFalse(server.isAlive());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "waited for the idle client");
+        }
+    }
+
+    @Test
+    void rejectsClientsWithoutToken(@TempDir Path tokens) throws Exception {
+        var daemon = new CompileDaemon(0, CompileOptions.DEFAULT, tokens);
+        var server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        server.start();
+
+        var tokenFile = daemon.getTokenFile();
+        if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+        }
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DaemonProtocol.writeFrame(out, DaemonProtocol.SHUTDOWN, new byte[0]);
+            assertEquals(DaemonProtocol.FAILED, DaemonProtocol.readFrame(in).getKind());
+            assertThrows(EOFException.class, () -> DaemonProtocol.readFrame(in));
+        }
+        Files.write(tokenFile, new byte[DaemonProtocol.TOKEN_LENGTH]);
+        assertThrows(IOException.class, () -> new DaemonClient(daemon.getPort(), tokens));
+        assertTrue(server.isAlive());
+
+        daemon.close();
+        server.join(10_000);
+        assertFalse(server.isAlive());
+        assertFalse(Files.exists(tokenFile));
+    }
+}
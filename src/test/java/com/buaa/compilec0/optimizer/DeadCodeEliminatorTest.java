@@ -0,0 +1,55 @@
+package com.buaa.compilec0.optimizer;
+
+import com.buaa.compilec0.assembler.Operation;
+import org.junit.jupiter.api.Test;
+
+import static com.buaa.compilec0.TestPrograms.assemble;
+import static com.buaa.compilec0.TestPrograms.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DeadCodeEliminatorTest {
+
+    @Test
+    void removesUnreachableCodeAndDeadStores() throws Exception {
+        var source = "let g: int = 0;\n"
+                + "fn side(x: int) -> int {\n g = g + x;\n return x;\n}\n"
+                + "fn f(n: int) -> int {\n"
+                + " let unused: int = side(n) * 2;\n"
+                + " let pure: int = n * 11;\n"
+                + " let live: int = 0;\n"
+                + " while n > 0 {\n"
+                + "  n = n - 1;\n"
+                + "  if n == 3 { continue; putint(91); }\n"
+                + "  if n == 1 { break; putint(92); }\n"
+                + "  live = live + n;\n"
+                + " }\n"
+                + " if 1 < 2 { live = live + 1000; } else { putint(93); }\n"
+                + " if 0 { putint(94); }\n"
+                + " return live;\n"
+                + " putint(95);\n"
+                + "}\n"
+                + "fn main() -> void {\n putint(f(7)); putln(); putint(g);\n}\n";
+        var optimized = assemble(source, 1);
+        var code = optimized.functions.get(1).getInstructions();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOperation(i) == Operation.push) {
+                assertFalse(code.getOperand(i) > 90 && code.getOperand(i) < 96, "unreachable putint left at " + i);
+            }
+            assertFalse(code.getOperation(i) == Operation.push && code.getOperand(i) == 11, "dead store left at " + i);
+        }
+        assertEquals("1017\n7", run(assemble(source, 0)));
+        assertEquals("1017\n7", run(optimized));
+    }
+
+    @Test
+    void returnsFromEveryPath() throws Exception {
+        var source = "fn v(n: int) -> void {\n"
+                + " if n > 2 { putint(n); return; }\n"
+                + " while n < 2 { n = n + 1; }\n"
+                + "}\n"
+                + "fn main() -> void {\n v(1); v(5); putint(0);\n}\n";
+        assertEquals("50", run(assemble(source, 0)));
+        assertEquals("50", run(assemble(source, 1)));
+    }
+}
@@ -0,0 +1,40 @@
+package com.buaa.compilec0.optimizer;
+
+import com.buaa.compilec0.assembler.Operation;
+import org.junit.jupiter.api.Test;
+
+import static com.buaa.compilec0.TestPrograms.assemble;
+import static com.buaa.compilec0.TestPrograms.run;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PeepholeOptimizerTest {
+
+    @Test
+    void branchesOnConditionDirectly() throws Exception {
+        var source = "fn main() -> void {\n let i: int = 0;\n"
+                + " while i <= 3 { if i == 2 { putint(i); } i = i + 1; }\n}\n";
+        var code = assemble(source, 1).functions.get(0).getInstructions();
+        for (int i = 0; i < code.size(); i++) {
+            assertFalse(code.getOperation(i) == Operation.not || code.getOperation(i) == Operation.nop);
+            assertFalse(code.getOperation(i) == Operation.br && code.getOperand(i) == 0);
+        }
+    }
+
+    @Test
+    void sameOutputAsUnoptimized() throws Exception {
+        var source = "fn f(n: int) -> int {\n"
+                + " let s: int = 0;\n"
+                + " while n > 0 { if n / 2 * 2 == n { s = s + n; } else { s = s * 1; } n = n - 1; s = s; }\n"
+                + " return s;\n}\n"
+                + "fn main() -> void {\n"
+                + " let i: int = 0;\n"
+                + " while i < 5 { if i >= 3 { putint(f(i)); } else if i != 1 { putint(-i); } putln(); i = i + 1; }\n"
+                + "}\n";
+        var optimized = assemble(source, 1);
+        var unoptimized = assemble(source, 0);
+        assertTrue(optimized.functions.get(0).getInstructions().size() < unoptimized.functions.get(0).getInstructions().size());
+        assertEquals(run(unoptimized), run(optimized));
+    }
+}
@@ -0,0 +1,88 @@
+package com.buaa.compilec0.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * TableTokenizer 和 Tokenizer 的差分测试
+ * 两边输出的 Token 序列（包括出错时的异常）必须完全一致
+ */
+class TableTokenizerTest {
+
+    private static final String[] PIECES = {
+            "fn", "let", "const", "as", "while", "if", "else", "return", "break", "continue",
+            "int", "void", "double", "ifx", "fnn", "_id", "x1", "E", "e1",
+            " ", "\t", "\n", "\r\n", "\r", "\u000b", "\u00a0",
+            "0", "123", "3.14", "1.5e-3", "2.0E+7", "1.", "1.5e", "1.5e+", "99999999999999999999",
+            "\"str\\n\"", "\"a\\tb\\\"c\"", "\"\\x\"", "\"abc", "'a'", "'\\n'", "'\\''", "'\\\\'", "''",
+            "->", "==", "!=", "!", "<=", ">=", "<", ">", "+", "-", "*", "/", "=",
+            "(", ")", "{", "}", ";", ":", ",", ".", "#",
+            "// comment\n", "  // line comment\n",
+    };
+
+    @Test
+    void sameTokensOnCorpus() throws IOException, URISyntaxException {
+        var corpus = Path.of(getClass().getResource("/c0").toURI());
+        List<Path> files;
+        try (Stream<Path> list = Files.list(corpus)) {
+            files = list.filter(p -> p.toString().endsWith(".c0")).collect(Collectors.toList());
+        }
+        assertFalse(files.isEmpty());
+        for (Path file : files) {
+            assertSameTokens(Files.readString(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void sameTokensOnRandomInput() {
+        var random = new Random(20201205);
+        for (int i = 0; i < 2000; i++) {
+            var source = new StringBuilder();
+            int count = random.nextInt(60);
+            for (int j = 0; j < count; j++) {
+                source.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            assertSameTokens(source.toString());
+        }
+    }
+
+    private static void assertSameTokens(String source) {
+        var expected = lex(new Tokenizer(new StringIter(new Scanner(source))));
+        var bytes = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        var actual = lex(new TableTokenizer(new ChannelCharSource(Channels.newChannel(bytes), StandardCharsets.UTF_8)));
+        assertEquals(expected, actual, source);
+    }
+
+    private static List<String> lex(Lexer lexer) {
+        var tokens = new ArrayList<String>();
+        try {
+            while (true) {
+                var token = lexer.nextToken();
+                tokens.add(token.getTokenType() + " " + token.getValue() + " "
+                        + token.getStartPos() + " " + token.getEndPos() + " " + token.getId());
+                if (token.getTokenType() == TokenType.EOF) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            tokens.add(e.toString());
+        }
+        return tokens;
+    }
+}
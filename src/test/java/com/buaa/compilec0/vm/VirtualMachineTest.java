@@ -0,0 +1,95 @@
+package com.buaa.compilec0.vm;
+
+import com.buaa.compilec0.analyser.Analyser;
+import com.buaa.compilec0.assembler.Assembler;
+import com.buaa.compilec0.assembler.BinaryCode;
+import com.buaa.compilec0.tokenizer.ChannelCharSource;
+import com.buaa.compilec0.tokenizer.Lexer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VirtualMachineTest {
+
+    @Test
+    void runsFibonacci() throws Exception {
+        var expected = new StringBuilder();
+        int a = 0, b = 1;
+        for (int i = 0; i < 20; i++) {
+            expected.append(a).append(' ').append(a).append('\n');
+            int t = a + b;
+            a = b;
+            b = t;
+        }
+        expected.append("done\n");
+        assertEquals(expected.toString(), run(Program.of(compile("/c0/fib.c0")), ""));
+    }
+
+    @Test
+    void sameOutputFromEncodedProgram() throws Exception {
+        var assembler = compile("/c0/literals.c0");
+        var encoded = Program.read(ByteBuffer.wrap(new BinaryCode(assembler).toByteArray()));
+        assertEquals(run(Program.of(assembler), ""), run(encoded, ""));
+    }
+
+    @Test
+    void readsInput() throws Exception {
+        var source = "fn main() -> void {\n let x: int;\n x = getint();\n putint(x * 2);\n}\n";
+        assertEquals("84", run(Program.of(compileSource(source)), "42\n"));
+    }
+
+    @Test
+    void printsDoubleWithDotInAnyLocale() throws Exception {
+        var source = "fn main() -> void {\n putdouble(1.5);\n}\n";
+        var locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            assertEquals("1.500000", run(Program.of(compileSource(source)), ""));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void rejectsBadModule() {
+        assertThrows(VmError.class, () -> Program.read(ByteBuffer.wrap(new byte[]{1, 2, 3, 4})));
+    }
+
+    @Test
+    void rejectsCorruptedCounts() throws Exception {
+        var code = new BinaryCode(compile("/c0/literals.c0")).toByteArray();
+        // 8 是全局量个数，13 是第一个全局量的长度
+        for (int offset : new int[]{8, 13}) {
+            for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+                var corrupted = ByteBuffer.wrap(code.clone()).putInt(offset, count);
+                var error = assertThrows(VmError.class, () -> Program.read(corrupted));
+                assertEquals("truncated o0 module", error.getMessage());
+            }
+        }
+    }
+
+    private static String run(Program program, String input) {
+        var output = new ByteArrayOutputStream();
+        var in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        new VirtualMachine(program, in, output).run();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private Assembler compile(String resource) throws Exception {
+        return compileSource(new String(getClass().getResourceAsStream(resource).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static Assembler compileSource(String source) throws Exception {
+        var bytes = new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+        var lexer = Lexer.create(new ChannelCharSource(Channels.newChannel(bytes), StandardCharsets.UTF_8));
+        return new Analyser(lexer).analyse();
+    }
+}